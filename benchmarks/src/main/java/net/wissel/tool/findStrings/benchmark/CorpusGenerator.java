@@ -0,0 +1,266 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+/**
+ * Generates a reproducible synthetic corpus: key lists, source trees, nested
+ * archives and result sets. The same seed always produces the same bytes
+ *
+ * @author swissel
+ *
+ */
+public final class CorpusGenerator {
+
+    public static final long DEFAULT_SEED = 20190101L;
+
+    private static final String FILLER_WORDS = "public private static final void return if else for while "
+            + "class interface import package new this null true false string integer list map set select "
+            + "from where insert update delete account contact opportunity trigger before after";
+
+    /**
+     * Generates a corpus on disk for manual runs
+     *
+     * @param args
+     *            target directory, number of keys, directories, files per
+     *            directory, file size in bytes
+     * @throws IOException
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: CorpusGenerator dir keyCount dirs filesPerDir fileSize");
+            System.exit(-1);
+        }
+        final File target = new File(args[0]);
+        final List<String> keys = CorpusGenerator.keys(Integer.parseInt(args[1]), CorpusGenerator.DEFAULT_SEED);
+        CorpusGenerator.writeKeyFile(new File(target, "keys.txt"), keys);
+        final File tree = new File(target, "tree");
+        CorpusGenerator.writeTree(tree, keys, Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                Integer.parseInt(args[4]), CorpusGenerator.DEFAULT_SEED);
+        CorpusGenerator.writeNestedZip(new File(tree, "nested.zip"), keys, 3, 20, Integer.parseInt(args[4]),
+                CorpusGenerator.DEFAULT_SEED);
+        System.out.println("Corpus written to " + target.getAbsolutePath());
+    }
+
+    /**
+     * @param count
+     *            number of keys
+     * @param seed
+     *            random seed
+     * @return distinct lower case keys in a stable order
+     */
+    public static List<String> keys(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final Set<String> result = new TreeSet<>();
+        while (result.size() < count) {
+            final StringBuilder b = new StringBuilder();
+            final int length = 6 + random.nextInt(14);
+            for (int i = 0; i < length; i++) {
+                b.append((char) ('a' + random.nextInt(26)));
+            }
+            if (random.nextBoolean()) {
+                b.append("__c");
+            }
+            result.add(b.toString());
+        }
+        final List<String> shuffled = new ArrayList<>(result);
+        Collections.shuffle(shuffled, random);
+        return shuffled;
+    }
+
+    /**
+     * Text made of filler words with a key roughly every 2 KB
+     *
+     * @param size
+     *            size in bytes
+     * @param keys
+     *            keys to sprinkle in
+     * @param random
+     *            source of randomness
+     * @return UTF-8 bytes of exactly size length
+     */
+    public static byte[] text(final int size, final List<String> keys, final Random random) {
+        final String[] words = CorpusGenerator.FILLER_WORDS.split(" ");
+        final StringBuilder b = new StringBuilder(size + 64);
+        while (b.length() < size) {
+            if (!keys.isEmpty() && random.nextInt(300) == 0) {
+                b.append(keys.get(random.nextInt(keys.size())).toUpperCase());
+            } else {
+                b.append(words[random.nextInt(words.length)]);
+            }
+            b.append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        b.setLength(size);
+        return b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param keyFile
+     *            the file to write, one key per line
+     * @param keys
+     *            the keys
+     * @throws IOException
+     */
+    public static void writeKeyFile(final File keyFile, final List<String> keys) throws IOException {
+        Files.createParentDirs(keyFile);
+        try (final PrintStream out = new PrintStream(keyFile, "UTF-8")) {
+            out.println("# Generated keys");
+            keys.forEach(out::println);
+        }
+    }
+
+    /**
+     * Writes a directory tree of text files
+     *
+     * @param root
+     *            where the tree goes
+     * @param keys
+     *            keys to sprinkle in
+     * @param dirs
+     *            number of directories, nested up to four levels deep
+     * @param filesPerDir
+     *            files in every directory
+     * @param fileSize
+     *            size of each file in bytes
+     * @param seed
+     *            random seed
+     * @throws IOException
+     */
+    public static void writeTree(final File root, final List<String> keys, final int dirs, final int filesPerDir,
+            final int fileSize, final long seed) throws IOException {
+        final Random random = new Random(seed);
+        for (int d = 0; d < dirs; d++) {
+            final File dir = new File(root, "d" + (d % 4) + "/d" + (d % 16) + "/d" + d);
+            dir.mkdirs();
+            for (int f = 0; f < filesPerDir; f++) {
+                Files.write(CorpusGenerator.text(fileSize, keys, random), new File(dir, "File" + f + ".java"));
+            }
+        }
+    }
+
+    /**
+     * Writes an archive that contains an archive, down to the given depth
+     *
+     * @param zipFile
+     *            the outer archive
+     * @param keys
+     *            keys to sprinkle in
+     * @param depth
+     *            nesting levels, 1 is a plain archive
+     * @param entries
+     *            text entries per level
+     * @param entrySize
+     *            size of each text entry
+     * @param seed
+     *            random seed
+     * @throws IOException
+     */
+    public static void writeNestedZip(final File zipFile, final List<String> keys, final int depth,
+            final int entries, final int entrySize, final long seed) throws IOException {
+        Files.createParentDirs(zipFile);
+        Files.write(CorpusGenerator.zipBytes(keys, depth, entries, entrySize, new Random(seed)), zipFile);
+    }
+
+    private static byte[] zipBytes(final List<String> keys, final int depth, final int entries,
+            final int entrySize, final Random random) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ZipOutputStream zos = new ZipOutputStream(bytes)) {
+            for (int e = 0; e < entries; e++) {
+                zos.putNextEntry(new ZipEntry("src/level" + depth + "/File" + e + ".java"));
+                zos.write(CorpusGenerator.text(entrySize, keys, random));
+                zos.closeEntry();
+            }
+            if (depth > 1) {
+                zos.putNextEntry(new ZipEntry("lib/inner" + depth + ".zip"));
+                zos.write(CorpusGenerator.zipBytes(keys, depth - 1, entries, entrySize, random));
+                zos.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A result set as the scan would produce it
+     *
+     * @param keys
+     *            the keys
+     * @param hits
+     *            total number of (key, file) pairs
+     * @param seed
+     *            random seed
+     * @return key -> files
+     */
+    public static Map<String, Set<String>> results(final List<String> keys, final int hits, final long seed) {
+        final Random random = new Random(seed);
+        final Map<String, Set<String>> result = new HashMap<>();
+        for (int i = 0; i < hits; i++) {
+            final String key = keys.get(random.nextInt(keys.size()));
+            result.computeIfAbsent(key, k -> new TreeSet<>())
+                    .add("project" + random.nextInt(50) + "/src/main/java/net/example/module" + random.nextInt(200)
+                            + "/File" + i + ".java");
+        }
+        return result;
+    }
+
+    /**
+     * @param keys
+     *            lower case keys
+     * @return the keys map as populateKeys builds it
+     */
+    public static Map<String, String> keyMap(final List<String> keys) {
+        final Map<String, String> result = new HashMap<>();
+        keys.forEach(k -> result.put(k, k.toUpperCase()));
+        return result;
+    }
+
+    /**
+     * Output that discards everything
+     *
+     * @return a stream to render into
+     */
+    public static PrintStream nullOutput() {
+        return new PrintStream(ByteStreams.nullOutputStream());
+    }
+
+    private CorpusGenerator() {
+        // Static helpers only
+    }
+
+}
@@ -0,0 +1,90 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.wissel.tool.findStrings.KeyMatcher;
+
+/**
+ * Key matching at varying key counts and content sizes
+ *
+ * @author swissel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class KeyMatcherBenchmark {
+
+    @Param({ "100", "1000", "20000" })
+    public int keyCount;
+
+    @Param({ "4096", "1048576" })
+    public int fileSize;
+
+    @Param({ "false", "true" })
+    public boolean prefilter;
+
+    private KeyMatcher matcher;
+    private byte[]     content;
+    private byte[]     buffer;
+
+    @Setup
+    public void setup() {
+        final List<String> keys = CorpusGenerator.keys(this.keyCount, CorpusGenerator.DEFAULT_SEED);
+        this.matcher = new KeyMatcher(keys, this.prefilter);
+        this.content = CorpusGenerator.text(this.fileSize, keys, new Random(CorpusGenerator.DEFAULT_SEED));
+        this.buffer = new byte[64 * 1024];
+    }
+
+    @Benchmark
+    public Set<String> wholeContent() {
+        return this.matcher.findIn(this.content, 0, this.content.length);
+    }
+
+    @Benchmark
+    public Set<String> chunkedStream() throws IOException {
+        return this.matcher.findIn(new ByteArrayInputStream(this.content), this.buffer);
+    }
+
+}
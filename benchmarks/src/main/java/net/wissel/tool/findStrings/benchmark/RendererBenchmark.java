@@ -0,0 +1,93 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.wissel.tool.findStrings.ReportRenderer;
+import net.wissel.tool.findStrings.ReportRendererJSON;
+import net.wissel.tool.findStrings.ReportRendererMD;
+import net.wissel.tool.findStrings.ReportRendererXML;
+
+/**
+ * Every ReportRenderer at large result sizes, rendering into a discarding
+ * stream so only the renderer itself is measured
+ *
+ * @author swissel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RendererBenchmark {
+
+    @Param({ "markdown", "xml", "json" })
+    public String format;
+
+    @Param({ "10000", "500000" })
+    public int hits;
+
+    private Map<String, Set<String>> results;
+    private Map<String, String>      keys;
+
+    @Setup
+    public void setup() {
+        final List<String> keyList = CorpusGenerator.keys(5000, CorpusGenerator.DEFAULT_SEED);
+        this.keys = CorpusGenerator.keyMap(keyList);
+        this.results = CorpusGenerator.results(keyList, this.hits, CorpusGenerator.DEFAULT_SEED);
+    }
+
+    @Benchmark
+    public void render() {
+        this.renderer().render(this.results, this.keys, CorpusGenerator.nullOutput());
+    }
+
+    private ReportRenderer renderer() {
+        switch (this.format) {
+            case "xml":
+                return new ReportRendererXML();
+            case "json":
+                return new ReportRendererJSON();
+            default:
+                return new ReportRendererMD();
+        }
+    }
+
+}
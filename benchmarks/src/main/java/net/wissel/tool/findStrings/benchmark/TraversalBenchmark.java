@@ -0,0 +1,99 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+import net.wissel.tool.findStrings.StringFinder;
+
+/**
+ * Recursive traversal and scanning of an already unpacked tree (-nz)
+ *
+ * @author swissel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class TraversalBenchmark {
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "1000" })
+    public int keyCount;
+
+    private File workDir;
+    private File keyFile;
+    private File tree;
+    private File report;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.workDir = Files.createTempDirectory("findStrings-traversal").toFile();
+        final List<String> keys = CorpusGenerator.keys(this.keyCount, CorpusGenerator.DEFAULT_SEED);
+        this.keyFile = new File(this.workDir, "keys.txt");
+        CorpusGenerator.writeKeyFile(this.keyFile, keys);
+        this.tree = new File(this.workDir, "tree");
+        CorpusGenerator.writeTree(this.tree, keys, 64, 32, 8 * 1024, CorpusGenerator.DEFAULT_SEED);
+        this.report = new File(this.workDir, "report.md");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MoreFiles.deleteRecursively(this.workDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    @Benchmark
+    public void processTree() throws Exception {
+        final StringFinder finder = new StringFinder();
+        finder.parseCommandLine(new String[] { "-d", this.tree.getAbsolutePath(), "-s",
+                this.keyFile.getAbsolutePath(), "-nz", "-o", this.report.getAbsolutePath(), "-t",
+                String.valueOf(this.threads) });
+        finder.run();
+    }
+
+}
@@ -0,0 +1,117 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+import net.wissel.tool.findStrings.StringFinder;
+
+/**
+ * Nested ZIP handling: expansion to disk compared to scanning in memory. The
+ * archive is copied into a fresh directory before every invocation, so every
+ * run has to expand it again
+ *
+ * @author swissel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class UnzipBenchmark {
+
+    @Param({ "extract", "noextract" })
+    public String mode;
+
+    @Param({ "1", "3" })
+    public int depth;
+
+    private File workDir;
+    private File keyFile;
+    private File archive;
+    private File scanDir;
+    private File report;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.workDir = java.nio.file.Files.createTempDirectory("findStrings-unzip").toFile();
+        final List<String> keys = CorpusGenerator.keys(1000, CorpusGenerator.DEFAULT_SEED);
+        this.keyFile = new File(this.workDir, "keys.txt");
+        CorpusGenerator.writeKeyFile(this.keyFile, keys);
+        this.archive = new File(this.workDir, "archive.zip");
+        CorpusGenerator.writeNestedZip(this.archive, keys, this.depth, 200, 16 * 1024, CorpusGenerator.DEFAULT_SEED);
+        this.scanDir = new File(this.workDir, "scan");
+        this.report = new File(this.workDir, "report.md");
+    }
+
+    @Setup(Level.Invocation)
+    public void freshCopy() throws IOException {
+        if (this.scanDir.exists()) {
+            MoreFiles.deleteRecursively(this.scanDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+        this.scanDir.mkdirs();
+        Files.copy(this.archive, new File(this.scanDir, this.archive.getName()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MoreFiles.deleteRecursively(this.workDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    @Benchmark
+    public void scanArchive() throws Exception {
+        final List<String> args = new ArrayList<>(Arrays.asList("-d", this.scanDir.getAbsolutePath(), "-s",
+                this.keyFile.getAbsolutePath(), "-o", this.report.getAbsolutePath()));
+        if ("noextract".equals(this.mode)) {
+            args.add("-nx");
+        }
+        final StringFinder finder = new StringFinder();
+        finder.parseCommandLine(args.toArray(new String[args.size()]));
+        finder.run();
+    }
+
+}
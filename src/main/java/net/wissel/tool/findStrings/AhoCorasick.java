@@ -0,0 +1,340 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable Aho-Corasick automaton over int symbols. Patterns are identified
+ * by their index in the list handed to the constructor. The automaton is
+ * stored in flat arrays so it can be shared between threads
+ *
+ * @author swissel
+ *
+ */
+final class AhoCorasick {
+
+    static final int ROOT = 0;
+
+    private static final int NO_NODE = -1;
+
+    /** Dense transition table for the root state */
+    private final int[] rootNext;
+
+    /** Open addressing hash table (state, symbol) -> state */
+    private final long[] edgeKeys;
+    private final int[]  edgeTargets;
+    private final int    edgeMask;
+
+    private final int[] fail;
+    private final int[] patternAt;
+    private final int[] outLink;
+
+    /**
+     * Compiles the automaton
+     *
+     * @param patterns
+     *            the patterns as symbol sequences, none of them empty
+     * @param alphabetSize
+     *            all symbols are in the range 0 .. alphabetSize-1
+     */
+    AhoCorasick(final List<int[]> patterns, final int alphabetSize) {
+        int maxNodes = 1;
+        for (final int[] p : patterns) {
+            maxNodes += p.length;
+        }
+
+        // Trie as first child / next sibling lists
+        final int[] firstChild = new int[maxNodes];
+        final int[] nextSibling = new int[maxNodes];
+        final int[] symbolOf = new int[maxNodes];
+        final int[] pattern = new int[maxNodes];
+        Arrays.fill(firstChild, NO_NODE);
+        Arrays.fill(pattern, NO_NODE);
+
+        final int tableSize = Integer.highestOneBit(Math.max(maxNodes, 8) * 2 - 1) << 1;
+        final long[] keys = new long[tableSize];
+        final int[] targets = new int[tableSize];
+        Arrays.fill(keys, -1L);
+        final int mask = tableSize - 1;
+
+        int nodeCount = 1;
+        for (int i = 0; i < patterns.size(); i++) {
+            int state = AhoCorasick.ROOT;
+            for (final int symbol : patterns.get(i)) {
+                int next = AhoCorasick.lookup(keys, targets, mask, state, symbol);
+                if (next == NO_NODE) {
+                    next = nodeCount++;
+                    symbolOf[next] = symbol;
+                    nextSibling[next] = firstChild[state];
+                    firstChild[state] = next;
+                    AhoCorasick.insert(keys, targets, mask, state, symbol, next);
+                }
+                state = next;
+            }
+            pattern[state] = i;
+        }
+
+        this.edgeKeys = keys;
+        this.edgeTargets = targets;
+        this.edgeMask = mask;
+        this.patternAt = Arrays.copyOf(pattern, nodeCount);
+        this.fail = new int[nodeCount];
+        this.outLink = new int[nodeCount];
+        this.outLink[AhoCorasick.ROOT] = NO_NODE;
+
+        this.rootNext = new int[alphabetSize];
+        for (int child = firstChild[AhoCorasick.ROOT]; child != NO_NODE; child = nextSibling[child]) {
+            this.rootNext[symbolOf[child]] = child;
+        }
+
+        // Breadth first to compute failure and output links
+        final int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        for (int child = firstChild[AhoCorasick.ROOT]; child != NO_NODE; child = nextSibling[child]) {
+            this.fail[child] = AhoCorasick.ROOT;
+            this.outLink[child] = NO_NODE;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            final int node = queue[head++];
+            for (int child = firstChild[node]; child != NO_NODE; child = nextSibling[child]) {
+                final int f = this.next(this.fail[node], symbolOf[child]);
+                this.fail[child] = f;
+                this.outLink[child] = (this.patternAt[f] != NO_NODE) ? f : this.outLink[f];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private AhoCorasick(final int[] rootNext, final long[] edgeKeys, final int[] edgeTargets, final int[] fail,
+            final int[] patternAt, final int[] outLink) {
+        this.rootNext = rootNext;
+        this.edgeKeys = edgeKeys;
+        this.edgeTargets = edgeTargets;
+        this.edgeMask = edgeKeys.length - 1;
+        this.fail = fail;
+        this.patternAt = patternAt;
+        this.outLink = outLink;
+    }
+
+    /**
+     * Reads an automaton written by {@link #write(DataOutputStream)}
+     *
+     * @param in
+     *            buffer positioned at the automaton
+     * @return the automaton
+     * @throws IOException
+     *             if the arrays don't fit together, a state is out of range
+     *             or a link chain doesn't end, which would fail or hang the
+     *             scan later
+     */
+    static AhoCorasick read(final ByteBuffer in) throws IOException {
+        final int[] rootNext = CompiledKeys.readInts(in);
+        final long[] edgeKeys = CompiledKeys.readLongs(in);
+        final int[] edgeTargets = CompiledKeys.readInts(in);
+        final int[] fail = CompiledKeys.readInts(in);
+        final int[] patternAt = CompiledKeys.readInts(in);
+        final int[] outLink = CompiledKeys.readInts(in);
+        if (Integer.bitCount(edgeKeys.length) != 1 || edgeTargets.length != edgeKeys.length
+                || fail.length == 0 || patternAt.length != fail.length || outLink.length != fail.length) {
+            throw new IOException("Corrupt automaton");
+        }
+        final int states = fail.length;
+        if (!AhoCorasick.inRange(rootNext, AhoCorasick.ROOT, states)
+                || !AhoCorasick.inRange(edgeTargets, NO_NODE, states)
+                || !AhoCorasick.inRange(fail, AhoCorasick.ROOT, states)
+                || !AhoCorasick.inRange(patternAt, NO_NODE, states) || !AhoCorasick.inRange(outLink, NO_NODE, states)
+                || !AhoCorasick.hasFreeSlot(edgeKeys) || !AhoCorasick.chainsEnd(fail, AhoCorasick.ROOT)
+                || !AhoCorasick.chainsEnd(outLink, NO_NODE)) {
+            throw new IOException("Corrupt automaton");
+        }
+        return new AhoCorasick(rootNext, edgeKeys, edgeTargets, fail, patternAt, outLink);
+    }
+
+    /**
+     * @return true if all values are in the range from min to below max
+     */
+    private static boolean inRange(final int[] values, final int min, final int max) {
+        for (final int v : values) {
+            if (v < min || v >= max) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a lookup of a missing edge stops at an empty slot
+     */
+    private static boolean hasFreeSlot(final long[] keys) {
+        for (final long key : keys) {
+            if (key == -1L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param links
+     *            a link to another state for every state, all in range
+     * @param end
+     *            where every chain has to end
+     * @return true if following the links from any state reaches end, without
+     *         a cycle
+     */
+    private static boolean chainsEnd(final int[] links, final int end) {
+        // 1: on the chain being followed, 2: known to reach end
+        final byte[] seen = new byte[links.length];
+        for (int start = 0; start < links.length; start++) {
+            int s = start;
+            while (s != end && seen[s] == 0) {
+                seen[s] = 1;
+                s = links[s];
+            }
+            if (s != end && seen[s] == 1) {
+                return false;
+            }
+            for (int t = start; t != s; t = links[t]) {
+                seen[t] = 2;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the compiled arrays, so the automaton can be loaded without
+     * building it again. The arrays are written as they are, loading is a
+     * bulk copy
+     *
+     * @param out
+     *            the destination
+     * @throws IOException
+     */
+    void write(final DataOutputStream out) throws IOException {
+        CompiledKeys.writeInts(out, this.rootNext);
+        CompiledKeys.writeLongs(out, this.edgeKeys);
+        CompiledKeys.writeInts(out, this.edgeTargets);
+        CompiledKeys.writeInts(out, this.fail);
+        CompiledKeys.writeInts(out, this.patternAt);
+        CompiledKeys.writeInts(out, this.outLink);
+    }
+
+    private static int lookup(final long[] keys, final int[] targets, final int mask, final int state,
+            final int symbol) {
+        final long key = AhoCorasick.edgeKey(state, symbol);
+        int slot = AhoCorasick.hash(key) & mask;
+        while (keys[slot] != -1L) {
+            if (keys[slot] == key) {
+                return targets[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_NODE;
+    }
+
+    private static void insert(final long[] keys, final int[] targets, final int mask, final int state,
+            final int symbol, final int target) {
+        final long key = AhoCorasick.edgeKey(state, symbol);
+        int slot = AhoCorasick.hash(key) & mask;
+        while (keys[slot] != -1L) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        targets[slot] = target;
+    }
+
+    private static long edgeKey(final int state, final int symbol) {
+        return (((long) state) << 32) | (symbol & 0xFFFFFFFFL);
+    }
+
+    private static int hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Advances the automaton by one symbol
+     *
+     * @param state
+     *            current state, ROOT to start
+     * @param symbol
+     *            the next input symbol
+     * @return the new state
+     */
+    int next(final int state, final int symbol) {
+        int s = state;
+        while (s != AhoCorasick.ROOT) {
+            final int target = AhoCorasick.lookup(this.edgeKeys, this.edgeTargets, this.edgeMask, s, symbol);
+            if (target != NO_NODE) {
+                return target;
+            }
+            s = this.fail[s];
+        }
+        return (symbol >= 0 && symbol < this.rootNext.length) ? this.rootNext[symbol] : AhoCorasick.ROOT;
+    }
+
+    /**
+     * @param state
+     *            a state
+     * @return the first state in the output chain of state or -1
+     */
+    int firstOutput(final int state) {
+        return (this.patternAt[state] != NO_NODE) ? state : this.outLink[state];
+    }
+
+    /**
+     * @param outputState
+     *            a state returned by firstOutput or nextOutput
+     * @return the next state in the output chain or -1
+     */
+    int nextOutput(final int outputState) {
+        return this.outLink[outputState];
+    }
+
+    /**
+     * @return one more than the highest pattern index in any state
+     */
+    int patternCount() {
+        int result = 0;
+        for (final int p : this.patternAt) {
+            result = Math.max(result, p + 1);
+        }
+        return result;
+    }
+
+    /**
+     * @param outputState
+     *            a state returned by firstOutput or nextOutput
+     * @return index of the pattern ending in this state
+     */
+    int patternAt(final int outputState) {
+        return this.patternAt[outputState];
+    }
+
+}
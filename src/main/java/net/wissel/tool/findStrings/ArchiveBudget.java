@@ -0,0 +1,137 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits for one archive found in the tree: how deep archives inside it are
+ * opened and how many bytes it may inflate, nested archives included.
+ * Guards against zip bombs. Shared by all threads scanning the entries of
+ * the archive
+ *
+ * @author swissel
+ *
+ */
+class ArchiveBudget {
+
+    /** Archive levels opened below an archive in the tree by default */
+    static final int DEFAULT_NESTING = 10;
+
+    /** No inflate limit */
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * Thrown when an archive inflated more than allowed
+     */
+    static class ExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        ExceededException(final String message) {
+            super(message);
+        }
+    }
+
+    private final int        maxNesting;
+    private final long       maxInflated;
+    private final AtomicLong inflated = new AtomicLong();
+
+    /**
+     * @param maxNesting
+     *            archive levels to open below the archive in the tree, 0
+     *            opens no nested archives
+     * @param maxInflated
+     *            bytes the archive may inflate in total
+     */
+    ArchiveBudget(final int maxNesting, final long maxInflated) {
+        this.maxNesting = maxNesting;
+        this.maxInflated = maxInflated;
+    }
+
+    /**
+     * @param depth
+     *            nesting depth of an archive, 1 for an archive inside the
+     *            archive in the tree
+     * @return true if it may be opened
+     */
+    boolean canOpen(final int depth) {
+        return depth <= this.maxNesting;
+    }
+
+    /**
+     * @return archive levels opened below the archive in the tree
+     */
+    int getMaxNesting() {
+        return this.maxNesting;
+    }
+
+    /**
+     * Counts what is read from an entry against the budget. Closing the
+     * returned stream doesn't close the entry stream
+     *
+     * @param in
+     *            the inflating entry stream
+     * @return a stream throwing {@link ExceededException} once the archive
+     *         inflated too much
+     */
+    InputStream limit(final InputStream in) {
+        if (this.maxInflated == ArchiveBudget.UNLIMITED) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+
+            @Override
+            public int read() throws IOException {
+                final int result = super.read();
+                if (result > -1) {
+                    ArchiveBudget.this.count(1);
+                }
+                return result;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int result = super.read(b, off, len);
+                if (result > 0) {
+                    ArchiveBudget.this.count(result);
+                }
+                return result;
+            }
+
+            @Override
+            public void close() {
+                // The entry stream belongs to the archive
+            }
+        };
+    }
+
+    private void count(final long bytes) throws ExceededException {
+        if (this.inflated.addAndGet(bytes) > this.maxInflated) {
+            throw new ExceededException("inflated more than " + (this.maxInflated >> 20) + " MB");
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Decides if content is text worth decoding or binary. Known extensions are
+ * decided by name, everything else by sampling the first block: a NUL byte
+ * or more than 10% control characters mark it as binary. Binary content is
+ * skipped or matched raw, i.e. only against the ASCII keys without decoding
+ *
+ * @author swissel
+ *
+ */
+final class BinaryFilter {
+
+    /**
+     * What to do with a piece of content
+     */
+    enum Action {
+        SCAN, RAW, SKIP
+    }
+
+    /** Extensions treated as binary when no deny list is given */
+    static final List<String> DEFAULT_DENY = Arrays.asList("class", "jar", "war", "ear", "png", "jpg", "jpeg",
+            "gif", "bmp", "ico", "pdf", "exe", "dll", "so", "dylib", "bin", "gz", "tgz", "7z", "rar", "mp3", "mp4",
+            "mov", "avi", "woff", "woff2", "ttf", "eot");
+
+    /** Bytes sampled, same as git uses */
+    static final int SAMPLE_SIZE = 8000;
+
+    /** Control characters above this share make content binary */
+    private static final int CONTROL_PERCENT = 10;
+
+    private final Action      binaryAction;
+    private final Set<String> deny;
+    private final Set<String> allow;
+
+    /**
+     * @param raw
+     *            match binary content raw instead of skipping it
+     * @param deny
+     *            extensions always treated as binary
+     * @param allow
+     *            extensions always treated as text, wins over deny
+     */
+    BinaryFilter(final boolean raw, final Collection<String> deny, final Collection<String> allow) {
+        this.binaryAction = raw ? Action.RAW : Action.SKIP;
+        this.deny = BinaryFilter.lowerCase(deny);
+        this.allow = BinaryFilter.lowerCase(allow);
+    }
+
+    private static Set<String> lowerCase(final Collection<String> extensions) {
+        final Set<String> result = new HashSet<>();
+        for (final String e : extensions) {
+            final String ext = e.trim().toLowerCase(Locale.ROOT);
+            if (!ext.isEmpty()) {
+                result.add(ext.startsWith(".") ? ext.substring(1) : ext);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param name
+     *            file or entry name
+     * @return the action for the extension or null if the content decides
+     */
+    Action byName(final String name) {
+        final int dot = name.lastIndexOf('.');
+        if (dot < 0 || dot < name.lastIndexOf('/')) {
+            return null;
+        }
+        final String extension = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (this.allow.contains(extension)) {
+            return Action.SCAN;
+        }
+        return this.deny.contains(extension) ? this.binaryAction : null;
+    }
+
+    /**
+     * @param data
+     *            the start of the content
+     * @param offset
+     *            where the content starts
+     * @param length
+     *            bytes available, only the first SAMPLE_SIZE are looked at
+     * @return the action for the content
+     */
+    Action byContent(final byte[] data, final int offset, final int length) {
+        return BinaryFilter.isBinary(data, offset, Math.min(length, BinaryFilter.SAMPLE_SIZE)) ? this.binaryAction
+                : Action.SCAN;
+    }
+
+    /**
+     * @return the settings, part of the scan cache fingerprint
+     */
+    String describe() {
+        return this.binaryAction + " deny=" + new TreeSet<>(this.deny) + " allow="
+                + new TreeSet<>(this.allow);
+    }
+
+    private static boolean isBinary(final byte[] data, final int offset, final int length) {
+        int control = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final int b = data[i] & 0xFF;
+            if (b == 0) {
+                return true;
+            }
+            if ((b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0x1B) || b == 0x7F) {
+                control++;
+            }
+        }
+        return control * 100 > length * BinaryFilter.CONTROL_PERCENT;
+    }
+
+}
@@ -0,0 +1,176 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Binary file holding a key set together with its compiled automata, so
+ * large key lists don't need to be parsed and compiled on every run. The
+ * file is memory mapped and its arrays are copied in bulk.
+ *
+ * Layout, big endian: magic, version, key count, (key, display name) pairs,
+ * then the {@link KeyMatcher}. Strings are stored as length and UTF-8 bytes,
+ * arrays as length and elements
+ *
+ * @author swissel
+ *
+ */
+final class CompiledKeys {
+
+    /** "FSKM" */
+    private static final int MAGIC   = 0x46534B4D;
+    /** 2: keys are case folded per code point */
+    private static final int VERSION = 2;
+
+    /**
+     * @param f
+     *            a key file
+     * @return true if the file starts with the compiled key magic
+     */
+    static boolean isCompiled(final File f) {
+        try (final InputStream in = new FileInputStream(f)) {
+            final byte[] magic = new byte[Integer.BYTES];
+            return in.read(magic) == magic.length && ByteBuffer.wrap(magic).getInt() == CompiledKeys.MAGIC;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads a compiled key file
+     *
+     * @param f
+     *            the compiled file
+     * @param keys
+     *            receives folded key -> key as written in the key file
+     * @param usePrefilter
+     *            build the prefilter for the matcher
+     * @return the matcher
+     * @throws IOException
+     *             if the file is unreadable, of another version or corrupt
+     */
+    static KeyMatcher read(final File f, final Map<String, String> keys, final boolean usePrefilter)
+            throws IOException {
+        try (final FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != CompiledKeys.MAGIC) {
+                throw new IOException(f + " is not a compiled key file");
+            }
+            final int version = in.getInt();
+            if (version != CompiledKeys.VERSION) {
+                throw new IOException(f + " has version " + version + ", recompile it");
+            }
+            final int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                final String key = CompiledKeys.readString(in);
+                keys.put(key, CompiledKeys.readString(in));
+            }
+            return KeyMatcher.read(in, usePrefilter);
+        } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                | NegativeArraySizeException e) {
+            throw new IOException(f + " is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * Writes keys and matcher
+     *
+     * @param f
+     *            the destination
+     * @param keys
+     *            folded key -> key as written in the key file
+     * @param matcher
+     *            the matcher compiled from the keys
+     * @throws IOException
+     */
+    static void write(final File f, final Map<String, String> keys, final KeyMatcher matcher) throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(CompiledKeys.MAGIC);
+            out.writeInt(CompiledKeys.VERSION);
+            out.writeInt(keys.size());
+            for (final Map.Entry<String, String> e : keys.entrySet()) {
+                CompiledKeys.writeString(out, e.getKey());
+                CompiledKeys.writeString(out, e.getValue());
+            }
+            matcher.write(out);
+        }
+    }
+
+    static void writeString(final DataOutputStream out, final String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInts(final DataOutputStream out, final int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (final int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    static int[] readInts(final ByteBuffer in) {
+        final int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    static void writeLongs(final DataOutputStream out, final long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (final long v : values) {
+            out.writeLong(v);
+        }
+    }
+
+    static long[] readLongs(final ByteBuffer in) {
+        final long[] values = new long[in.getInt()];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    private CompiledKeys() {
+        // Static helpers only
+    }
+
+}
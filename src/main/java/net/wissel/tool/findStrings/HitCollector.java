@@ -0,0 +1,45 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.util.Collection;
+
+/**
+ * Receives the keys found in every scanned file. Implementations must allow
+ * concurrent calls
+ *
+ * @author swissel
+ *
+ */
+public interface HitCollector {
+
+    /**
+     * Records all keys found in one file
+     *
+     * @param fileName
+     *            the file as it should show up in the report
+     * @param foundKeys
+     *            the keys found in that file, might be empty
+     */
+    public void addHits(final String fileName, final Collection<String> foundKeys);
+
+}
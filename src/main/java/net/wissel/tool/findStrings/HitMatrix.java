@@ -0,0 +1,130 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.util.BitSet;
+
+/**
+ * Key x file hit matrix, one compressed {@link IdBitmap} of file ids per key.
+ * Rows are created with the first hit of a key, so memory follows the number
+ * of hits, not keys x files. Not thread safe, concurrent writers fill partial
+ * matrices over the same file id space that are merged with
+ * {@link #or(HitMatrix)}
+ *
+ * @author swissel
+ *
+ */
+final class HitMatrix {
+
+    private final IdBitmap[] rows;
+
+    /**
+     * @param keyCount
+     *            number of dense key ids
+     */
+    HitMatrix(final int keyCount) {
+        this.rows = new IdBitmap[keyCount];
+    }
+
+    /**
+     * @param key
+     *            key id
+     * @param file
+     *            file id
+     */
+    void set(final int key, final int file) {
+        if (this.rows[key] == null) {
+            this.rows[key] = new IdBitmap();
+        }
+        this.rows[key].add(file);
+    }
+
+    /**
+     * Adds all hits of another matrix over the same key and file ids, a
+     * bitwise OR row by row
+     *
+     * @param other
+     *            the matrix to merge in, not changed
+     */
+    void or(final HitMatrix other) {
+        for (int key = 0; key < this.rows.length; key++) {
+            if (other.rows[key] != null) {
+                if (this.rows[key] == null) {
+                    this.rows[key] = new IdBitmap();
+                }
+                this.rows[key].or(other.rows[key]);
+            }
+        }
+    }
+
+    /**
+     * @param key
+     *            key id
+     * @return the files the key was found in, ascending, empty if none
+     */
+    int[] files(final int key) {
+        return (this.rows[key] == null) ? new int[0] : this.rows[key].toArray();
+    }
+
+    /**
+     * @param keys
+     *            key ids
+     * @return the files containing all of the keys, ascending, empty for no
+     *         keys
+     */
+    int[] filesMatchingAll(final int[] keys) {
+        if (keys.length == 0) {
+            return new int[0];
+        }
+        IdBitmap result = this.rows[keys[0]];
+        for (int i = 1; (i < keys.length) && (result != null) && !result.isEmpty(); i++) {
+            result = (this.rows[keys[i]] == null) ? null : result.and(this.rows[keys[i]]);
+        }
+        return (result == null) ? new int[0] : result.toArray();
+    }
+
+    /**
+     * @return the ids of all keys without a hit
+     */
+    BitSet keysNeverFound() {
+        final BitSet result = new BitSet(this.rows.length);
+        for (int key = 0; key < this.rows.length; key++) {
+            if ((this.rows[key] == null) || this.rows[key].isEmpty()) {
+                result.set(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if there is no hit at all
+     */
+    boolean isEmpty() {
+        for (final IdBitmap row : this.rows) {
+            if ((row != null) && !row.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
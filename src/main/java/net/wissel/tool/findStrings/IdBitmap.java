@@ -0,0 +1,324 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non negative int ids, in the manner of a Roaring bitmap.
+ * Ids are grouped by their upper 16 bits into containers. A container holds
+ * the lower 16 bits as a sorted char array while it has up to
+ * {@value #ARRAY_LIMIT} entries, as a 65536 bit long[] above. Sparse sets cost
+ * about two bytes per id, dense ones one bit per id. Not thread safe
+ *
+ * @author swissel
+ *
+ */
+final class IdBitmap {
+
+    /** Most entries of an array container, a bitmap container is as big */
+    static final int ARRAY_LIMIT = 4096;
+
+    private static final int BITMAP_WORDS = 1024;
+
+    /* Container i holds the ids with upper bits highs[i], sorted by highs */
+    private char[]   highs      = new char[0];
+    private Object[] containers = new Object[0];
+    private int[]    sizes      = new int[0];
+    private int      count;
+
+    /**
+     * @param id
+     *            the id to add, not negative
+     */
+    void add(final int id) {
+        final int i = this.container((char) (id >>> 16));
+        final char low = (char) id;
+        if (this.containers[i] instanceof long[]) {
+            final long[] words = (long[]) this.containers[i];
+            final long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                this.sizes[i]++;
+            }
+            return;
+        }
+        char[] values = (char[]) this.containers[i];
+        final int size = this.sizes[i];
+        final int pos = Arrays.binarySearch(values, 0, size, low);
+        if (pos >= 0) {
+            return;
+        }
+        if (size == IdBitmap.ARRAY_LIMIT) {
+            final long[] words = IdBitmap.toWords(values, size);
+            words[low >>> 6] |= 1L << low;
+            this.containers[i] = words;
+            this.sizes[i] = size + 1;
+            return;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(IdBitmap.ARRAY_LIMIT, Math.max(4, size * 2)));
+            this.containers[i] = values;
+        }
+        final int insert = -pos - 1;
+        System.arraycopy(values, insert, values, insert + 1, size - insert);
+        values[insert] = low;
+        this.sizes[i] = size + 1;
+    }
+
+    /**
+     * @param id
+     *            an id
+     * @return true if the id is in the set
+     */
+    boolean contains(final int id) {
+        final int i = Arrays.binarySearch(this.highs, 0, this.count, (char) (id >>> 16));
+        return (i >= 0) && IdBitmap.contains(this.containers[i], this.sizes[i], (char) id);
+    }
+
+    /**
+     * Adds all ids of another set, container by container
+     *
+     * @param other
+     *            the set to merge in, not changed
+     */
+    void or(final IdBitmap other) {
+        for (int o = 0; o < other.count; o++) {
+            final int i = this.container(other.highs[o]);
+            final Object mine = this.containers[i];
+            final Object theirs = other.containers[o];
+            final int theirSize = other.sizes[o];
+            if ((mine instanceof long[]) || (theirs instanceof long[])
+                    || (this.sizes[i] + theirSize > IdBitmap.ARRAY_LIMIT)) {
+                final long[] words = (mine instanceof long[]) ? (long[]) mine
+                        : IdBitmap.toWords((char[]) mine, this.sizes[i]);
+                if (theirs instanceof long[]) {
+                    final long[] theirWords = (long[]) theirs;
+                    for (int w = 0; w < IdBitmap.BITMAP_WORDS; w++) {
+                        words[w] |= theirWords[w];
+                    }
+                } else {
+                    final char[] values = (char[]) theirs;
+                    for (int v = 0; v < theirSize; v++) {
+                        words[values[v] >>> 6] |= 1L << values[v];
+                    }
+                }
+                final int size = IdBitmap.cardinality(words);
+                this.store(i, (size > IdBitmap.ARRAY_LIMIT) ? words : IdBitmap.toValues(words, size), size);
+            } else {
+                final char[] merged = new char[this.sizes[i] + theirSize];
+                this.store(i, merged,
+                        IdBitmap.union((char[]) mine, this.sizes[i], (char[]) theirs, theirSize, merged));
+            }
+        }
+    }
+
+    /**
+     * @param other
+     *            another set, not changed
+     * @return a new set with the ids in both sets
+     */
+    IdBitmap and(final IdBitmap other) {
+        final IdBitmap result = new IdBitmap();
+        for (int i = 0; i < this.count; i++) {
+            final int o = Arrays.binarySearch(other.highs, 0, other.count, this.highs[i]);
+            if (o < 0) {
+                continue;
+            }
+            final Object mine = this.containers[i];
+            final Object theirs = other.containers[o];
+            if ((mine instanceof long[]) && (theirs instanceof long[])) {
+                final long[] words = new long[IdBitmap.BITMAP_WORDS];
+                for (int w = 0; w < IdBitmap.BITMAP_WORDS; w++) {
+                    words[w] = ((long[]) mine)[w] & ((long[]) theirs)[w];
+                }
+                final int size = IdBitmap.cardinality(words);
+                if (size > 0) {
+                    result.append(this.highs[i], (size > IdBitmap.ARRAY_LIMIT) ? words
+                            : IdBitmap.toValues(words, size), size);
+                }
+            } else {
+                // Filter the array side by the other container
+                final boolean mineIsArray = mine instanceof char[];
+                final char[] values = (char[]) (mineIsArray ? mine : theirs);
+                final int valueCount = mineIsArray ? this.sizes[i] : other.sizes[o];
+                final Object filter = mineIsArray ? theirs : mine;
+                final int filterSize = mineIsArray ? other.sizes[o] : this.sizes[i];
+                final char[] kept = new char[valueCount];
+                int size = 0;
+                for (int v = 0; v < valueCount; v++) {
+                    if (IdBitmap.contains(filter, filterSize, values[v])) {
+                        kept[size++] = values[v];
+                    }
+                }
+                if (size > 0) {
+                    result.append(this.highs[i], kept, size);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of ids
+     */
+    int cardinality() {
+        int result = 0;
+        for (int i = 0; i < this.count; i++) {
+            result += this.sizes[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return true if there is no id
+     */
+    boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * @return all ids, ascending
+     */
+    int[] toArray() {
+        final int[] result = new int[this.cardinality()];
+        int n = 0;
+        for (int i = 0; i < this.count; i++) {
+            final int high = this.highs[i] << 16;
+            if (this.containers[i] instanceof long[]) {
+                final long[] words = (long[]) this.containers[i];
+                for (int w = 0; w < IdBitmap.BITMAP_WORDS; w++) {
+                    for (long word = words[w]; word != 0; word &= word - 1) {
+                        result[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                    }
+                }
+            } else {
+                final char[] values = (char[]) this.containers[i];
+                for (int v = 0; v < this.sizes[i]; v++) {
+                    result[n++] = high | values[v];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the container for the upper bits, a new empty one
+     *         if there is none yet
+     */
+    private int container(final char high) {
+        final int pos = Arrays.binarySearch(this.highs, 0, this.count, high);
+        if (pos >= 0) {
+            return pos;
+        }
+        final int insert = -pos - 1;
+        if (this.count == this.highs.length) {
+            final int capacity = Math.max(4, this.count * 2);
+            this.highs = Arrays.copyOf(this.highs, capacity);
+            this.containers = Arrays.copyOf(this.containers, capacity);
+            this.sizes = Arrays.copyOf(this.sizes, capacity);
+        }
+        System.arraycopy(this.highs, insert, this.highs, insert + 1, this.count - insert);
+        System.arraycopy(this.containers, insert, this.containers, insert + 1, this.count - insert);
+        System.arraycopy(this.sizes, insert, this.sizes, insert + 1, this.count - insert);
+        this.highs[insert] = high;
+        this.containers[insert] = new char[0];
+        this.sizes[insert] = 0;
+        this.count++;
+        return insert;
+    }
+
+    /**
+     * Adds a non empty container for upper bits not in the set yet
+     */
+    private void append(final char high, final Object container, final int size) {
+        this.store(this.container(high), container, size);
+    }
+
+    private void store(final int i, final Object container, final int size) {
+        this.containers[i] = container;
+        this.sizes[i] = size;
+    }
+
+    private static boolean contains(final Object container, final int size, final char low) {
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, size, low) >= 0;
+    }
+
+    /**
+     * Merges two sorted arrays without duplicates
+     *
+     * @return the number of values in the target
+     */
+    private static int union(final char[] a, final int aSize, final char[] b, final int bSize, final char[] target) {
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while ((i < aSize) && (j < bSize)) {
+            if (a[i] < b[j]) {
+                target[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                target[n++] = b[j++];
+            } else {
+                target[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < aSize) {
+            target[n++] = a[i++];
+        }
+        while (j < bSize) {
+            target[n++] = b[j++];
+        }
+        return n;
+    }
+
+    private static long[] toWords(final char[] values, final int size) {
+        final long[] words = new long[IdBitmap.BITMAP_WORDS];
+        for (int v = 0; v < size; v++) {
+            words[values[v] >>> 6] |= 1L << values[v];
+        }
+        return words;
+    }
+
+    private static char[] toValues(final long[] words, final int size) {
+        final char[] values = new char[size];
+        int n = 0;
+        for (int w = 0; w < IdBitmap.BITMAP_WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return values;
+    }
+
+    private static int cardinality(final long[] words) {
+        int result = 0;
+        for (final long word : words) {
+            result += Long.bitCount(word);
+        }
+        return result;
+    }
+
+}
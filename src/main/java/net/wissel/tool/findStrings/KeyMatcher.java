@@ -0,0 +1,502 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds all keys in a text in a single pass, independent of the number of
+ * keys. The keys are compiled once into Aho-Corasick automata, the matcher
+ * is thread safe.
+ *
+ * Matching works on the raw UTF-8 bytes with ASCII case folding done inline.
+ * Only keys containing non-ASCII characters need the content decoded and
+ * case folded, which happens incrementally inside a {@link Scan}. Keys and
+ * content are folded the same way, code point by code point, see
+ * {@link #fold(String)}.
+ *
+ * Content can be fed in chunks of any size, a Scan carries the automaton
+ * state across chunk boundaries, so memory stays bounded by the chunk size.
+ *
+ * For very large key sets an optional {@link Prefilter} keeps the automaton
+ * in its root state over content where no key can start. It only applies
+ * when all keys are ASCII
+ *
+ * @author swissel
+ *
+ */
+public class KeyMatcher {
+
+    private static final int   BYTE_ALPHABET = 256;
+    private static final int   CHAR_ALPHABET = Character.MAX_VALUE + 1;
+    private static final int[] ASCII_FOLD    = new int[KeyMatcher.BYTE_ALPHABET];
+    private static final int   REPLACEMENT   = 0xFFFD;
+
+    static {
+        for (int i = 0; i < KeyMatcher.ASCII_FOLD.length; i++) {
+            KeyMatcher.ASCII_FOLD[i] = (i >= 'A' && i <= 'Z') ? i + ('a' - 'A') : i;
+        }
+    }
+
+    private final String[]    keys;
+    private final AhoCorasick byteAutomaton;
+    private final int[]       byteKeyIds;
+    private final AhoCorasick charAutomaton;
+    private final int[]       charKeyIds;
+    private final Prefilter   prefilter;
+
+    /**
+     * Case folds a key or text one code point at a time, the same way a
+     * {@link Scan} folds the content. Unlike String.toLowerCase() the result
+     * doesn't depend on context or locale, a final sigma folds like any
+     * sigma. Characters outside ASCII never fold into ASCII (dotted capital
+     * I, dotless i, long s, Kelvin sign stay as they are), so ASCII keys can
+     * keep matching on the raw bytes
+     *
+     * @param text
+     *            key or text
+     * @return the folded text
+     */
+    public static String fold(final String text) {
+        final StringBuilder result = new StringBuilder(text.length());
+        text.codePoints().forEach(c -> result.appendCodePoint(KeyMatcher.fold(c)));
+        return result.toString();
+    }
+
+    private static int fold(final int codePoint) {
+        final int folded = Character.toLowerCase(Character.toUpperCase(codePoint));
+        return (codePoint >= 0x80 && folded < 0x80) ? codePoint : folded;
+    }
+
+    /**
+     * @param keys
+     *            the keys to look for, matched ignoring case
+     */
+    public KeyMatcher(final Collection<String> keys) {
+        this(keys, false);
+    }
+
+    /**
+     * @param keys
+     *            the keys to look for, matched ignoring case
+     * @param usePrefilter
+     *            skip content where no key can start with a rolling hash
+     *            check, pays off for many thousand keys
+     */
+    public KeyMatcher(final Collection<String> keys, final boolean usePrefilter) {
+        final List<String> usable = new ArrayList<>();
+        final List<int[]> bytePatterns = new ArrayList<>();
+        final List<Integer> byteIds = new ArrayList<>();
+        final List<int[]> charPatterns = new ArrayList<>();
+        final List<Integer> charIds = new ArrayList<>();
+        for (final String k : keys) {
+            if (k.isEmpty()) {
+                continue;
+            }
+            final int id = usable.size();
+            usable.add(k);
+            final int[] pattern = KeyMatcher.fold(k).chars().toArray();
+            if (KeyMatcher.isAscii(k)) {
+                bytePatterns.add(pattern);
+                byteIds.add(id);
+            } else {
+                charPatterns.add(pattern);
+                charIds.add(id);
+            }
+        }
+        this.keys = usable.toArray(new String[usable.size()]);
+        this.byteAutomaton = new AhoCorasick(bytePatterns, KeyMatcher.BYTE_ALPHABET);
+        this.byteKeyIds = byteIds.stream().mapToInt(Integer::intValue).toArray();
+        this.charAutomaton = charPatterns.isEmpty() ? null
+                : new AhoCorasick(charPatterns, KeyMatcher.CHAR_ALPHABET);
+        this.charKeyIds = charIds.stream().mapToInt(Integer::intValue).toArray();
+        this.prefilter = KeyMatcher.buildPrefilter(usePrefilter, bytePatterns, !charPatterns.isEmpty());
+    }
+
+    private KeyMatcher(final String[] keys, final AhoCorasick byteAutomaton, final int[] byteKeyIds,
+            final AhoCorasick charAutomaton, final int[] charKeyIds, final boolean usePrefilter) {
+        this.keys = keys;
+        this.byteAutomaton = byteAutomaton;
+        this.byteKeyIds = byteKeyIds;
+        this.charAutomaton = charAutomaton;
+        this.charKeyIds = charKeyIds;
+        final List<int[]> bytePatterns = new ArrayList<>(byteKeyIds.length);
+        for (final int id : byteKeyIds) {
+            bytePatterns.add(KeyMatcher.fold(keys[id]).chars().toArray());
+        }
+        this.prefilter = KeyMatcher.buildPrefilter(usePrefilter, bytePatterns, charAutomaton != null);
+    }
+
+    /**
+     * Reads a matcher written by {@link #write(DataOutputStream)}
+     *
+     * @param in
+     *            buffer positioned at the matcher
+     * @param usePrefilter
+     *            build the prefilter, it is not part of the file
+     * @return the matcher
+     * @throws IOException
+     *             if the content doesn't fit together
+     */
+    static KeyMatcher read(final ByteBuffer in, final boolean usePrefilter) throws IOException {
+        final String[] keys = new String[in.getInt()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = CompiledKeys.readString(in);
+        }
+        final AhoCorasick byteAutomaton = AhoCorasick.read(in);
+        final int[] byteKeyIds = CompiledKeys.readInts(in);
+        final AhoCorasick charAutomaton = (in.get() != 0) ? AhoCorasick.read(in) : null;
+        final int[] charKeyIds = CompiledKeys.readInts(in);
+        for (final int[] ids : new int[][] { byteKeyIds, charKeyIds }) {
+            for (final int id : ids) {
+                if (id < 0 || id >= keys.length) {
+                    throw new IOException("Corrupt key id " + id);
+                }
+            }
+        }
+        if (byteAutomaton.patternCount() > byteKeyIds.length
+                || (charAutomaton != null && charAutomaton.patternCount() > charKeyIds.length)) {
+            throw new IOException("Corrupt automaton");
+        }
+        return new KeyMatcher(keys, byteAutomaton, byteKeyIds, charAutomaton, charKeyIds, usePrefilter);
+    }
+
+    private static Prefilter buildPrefilter(final boolean usePrefilter, final List<int[]> bytePatterns,
+            final boolean hasCharKeys) {
+        if (!usePrefilter || hasCharKeys || bytePatterns.isEmpty()) {
+            return null;
+        }
+        return new Prefilter(bytePatterns, Math.min(Prefilter.MAX_WINDOW, KeyMatcher.shortest(bytePatterns)));
+    }
+
+    private static int shortest(final List<int[]> patterns) {
+        int result = Integer.MAX_VALUE;
+        for (final int[] p : patterns) {
+            result = Math.min(result, p.length);
+        }
+        return result;
+    }
+
+    /**
+     * Writes keys and compiled automata, the prefilter is rebuilt on load
+     *
+     * @param out
+     *            the destination
+     * @throws IOException
+     */
+    void write(final DataOutputStream out) throws IOException {
+        out.writeInt(this.keys.length);
+        for (final String k : this.keys) {
+            CompiledKeys.writeString(out, k);
+        }
+        this.byteAutomaton.write(out);
+        CompiledKeys.writeInts(out, this.byteKeyIds);
+        out.writeByte((this.charAutomaton != null) ? 1 : 0);
+        if (this.charAutomaton != null) {
+            this.charAutomaton.write(out);
+        }
+        CompiledKeys.writeInts(out, this.charKeyIds);
+    }
+
+    /**
+     * @return true if the prefilter is in use
+     */
+    public boolean hasPrefilter() {
+        return this.prefilter != null;
+    }
+
+    private static boolean isAscii(final String k) {
+        for (int i = 0; i < k.length(); i++) {
+            if (k.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans UTF-8 encoded content for all keys
+     *
+     * @param data
+     *            the raw bytes
+     * @param offset
+     *            where the content starts
+     * @param length
+     *            number of bytes to scan
+     * @return the keys found in the content
+     */
+    public Set<String> findIn(final byte[] data, final int offset, final int length) {
+        final Scan scan = this.newScan();
+        scan.feed(data, offset, length);
+        return scan.getKeys();
+    }
+
+    /**
+     * Scans a stream chunk by chunk, the stream is read to the end but not
+     * closed
+     *
+     * @param in
+     *            the UTF-8 encoded content
+     * @param buffer
+     *            the chunk buffer to use, its size bounds the memory used
+     * @return the keys found in the content
+     * @throws IOException
+     */
+    public Set<String> findIn(final InputStream in, final byte[] buffer) throws IOException {
+        final Scan scan = this.newScan();
+        int read = in.read(buffer);
+        while (read > -1) {
+            scan.feed(buffer, 0, read);
+            read = in.read(buffer);
+        }
+        return scan.getKeys();
+    }
+
+    /**
+     * @return a fresh scan for one piece of content
+     */
+    public Scan newScan() {
+        return new Scan(false);
+    }
+
+    /**
+     * A scan for binary content: the bytes are not decoded, so only keys made
+     * of ASCII characters can be found
+     *
+     * @return a fresh raw scan for one piece of content
+     */
+    public Scan newRawScan() {
+        return new Scan(true);
+    }
+
+    /**
+     * State of scanning one piece of content that arrives in chunks. Not
+     * thread safe, use one Scan per content
+     *
+     * @author swissel
+     *
+     */
+    public final class Scan {
+
+        private final BitSet  found     = new BitSet(KeyMatcher.this.keys.length);
+        private final boolean decode;
+        private int           byteState = AhoCorasick.ROOT;
+        private int           charState = AhoCorasick.ROOT;
+
+        /* UTF-8 decoder state for the non-ASCII keys */
+        private int codePoint;
+        private int pendingBytes;
+
+        /*
+         * Prefilter state: the last window of folded bytes, the automaton
+         * runs one window behind the rolling hash
+         */
+        private final int[] window = (KeyMatcher.this.prefilter == null) ? null
+                : new int[KeyMatcher.this.prefilter.window()];
+        private int         windowPos;
+        private int         windowFill;
+        private int         hash;
+
+        private Scan(final boolean raw) {
+            this.decode = !raw && KeyMatcher.this.charAutomaton != null;
+        }
+
+        /**
+         * Feeds the next chunk of content
+         *
+         * @param data
+         *            the raw bytes
+         * @param offset
+         *            where the chunk starts
+         * @param length
+         *            number of bytes in the chunk
+         */
+        public void feed(final byte[] data, final int offset, final int length) {
+            final int end = offset + length;
+            if (this.window != null) {
+                for (int i = offset; i < end; i++) {
+                    this.consumeFiltered(data[i] & 0xFF);
+                }
+            } else {
+                for (int i = offset; i < end; i++) {
+                    this.consume(data[i] & 0xFF);
+                }
+            }
+        }
+
+        /**
+         * Feeds the remaining bytes of a buffer, e.g. a memory mapped file
+         * region. The buffer's position is moved to its limit
+         *
+         * @param data
+         *            the raw bytes
+         */
+        public void feed(final ByteBuffer data) {
+            final int end = data.limit();
+            if (this.window != null) {
+                for (int i = data.position(); i < end; i++) {
+                    this.consumeFiltered(data.get(i) & 0xFF);
+                }
+            } else {
+                for (int i = data.position(); i < end; i++) {
+                    this.consume(data.get(i) & 0xFF);
+                }
+            }
+            data.position(end);
+        }
+
+        private void consume(final int b) {
+            this.step(KeyMatcher.ASCII_FOLD[b]);
+            if (this.decode) {
+                this.decode(b);
+            }
+        }
+
+        private void step(final int folded) {
+            final AhoCorasick bytes = KeyMatcher.this.byteAutomaton;
+            this.byteState = bytes.next(this.byteState, folded);
+            for (int o = bytes.firstOutput(this.byteState); o != -1; o = bytes.nextOutput(o)) {
+                this.found.set(KeyMatcher.this.byteKeyIds[bytes.patternAt(o)]);
+            }
+        }
+
+        /**
+         * Adds a byte to the hash window and decides on the byte the window
+         * now starts with. In the root state no match is in progress, so the
+         * byte is only worth feeding if a key can start with the window
+         */
+        private void consumeFiltered(final int b) {
+            final Prefilter filter = KeyMatcher.this.prefilter;
+            final int folded = KeyMatcher.ASCII_FOLD[b];
+            this.hash = filter.roll(this.hash, this.window[this.windowPos], folded);
+            this.window[this.windowPos] = folded;
+            this.windowPos = (this.windowPos + 1 == this.window.length) ? 0 : this.windowPos + 1;
+            if (this.windowFill < this.window.length) {
+                this.windowFill++;
+                if (this.windowFill < this.window.length) {
+                    return;
+                }
+            }
+            if (this.byteState != AhoCorasick.ROOT || filter.mayStart(this.hash)) {
+                this.step(this.window[this.windowPos]);
+            }
+        }
+
+        /**
+         * Runs the automaton over the bytes still held in the hash window.
+         * They are too few to start a key, only a match in progress matters
+         */
+        private void finishFiltered() {
+            if (this.windowFill == this.window.length) {
+                for (int i = 1; i < this.window.length && this.byteState != AhoCorasick.ROOT; i++) {
+                    this.step(this.window[(this.windowPos + i) % this.window.length]);
+                }
+            }
+            this.windowFill = 0;
+        }
+
+        /**
+         * @return the keys found, call after the last chunk was fed
+         */
+        public Set<String> getKeys() {
+            if (this.window != null) {
+                this.finishFiltered();
+            }
+            final Set<String> result = new HashSet<>();
+            for (int k = this.found.nextSetBit(0); k >= 0; k = this.found.nextSetBit(k + 1)) {
+                result.add(KeyMatcher.this.keys[k]);
+            }
+            return result;
+        }
+
+        private void decode(final int b) {
+            if (b < 0x80) {
+                this.flushIncomplete();
+                this.charState = KeyMatcher.this.charAutomaton.next(this.charState, KeyMatcher.ASCII_FOLD[b]);
+                this.reportChars();
+            } else if (b < 0xC0) {
+                if (this.pendingBytes == 0) {
+                    this.emit(KeyMatcher.REPLACEMENT);
+                } else {
+                    this.codePoint = (this.codePoint << 6) | (b & 0x3F);
+                    this.pendingBytes--;
+                    if (this.pendingBytes == 0) {
+                        this.emit(this.codePoint);
+                    }
+                }
+            } else {
+                this.flushIncomplete();
+                if (b < 0xE0) {
+                    this.codePoint = b & 0x1F;
+                    this.pendingBytes = 1;
+                } else if (b < 0xF0) {
+                    this.codePoint = b & 0x0F;
+                    this.pendingBytes = 2;
+                } else if (b < 0xF8) {
+                    this.codePoint = b & 0x07;
+                    this.pendingBytes = 3;
+                } else {
+                    this.emit(KeyMatcher.REPLACEMENT);
+                }
+            }
+        }
+
+        private void flushIncomplete() {
+            if (this.pendingBytes > 0) {
+                this.pendingBytes = 0;
+                this.emit(KeyMatcher.REPLACEMENT);
+            }
+        }
+
+        private void emit(final int decoded) {
+            final int lower = Character.isValidCodePoint(decoded) ? KeyMatcher.fold(decoded)
+                    : KeyMatcher.REPLACEMENT;
+            if (Character.isBmpCodePoint(lower)) {
+                this.charState = KeyMatcher.this.charAutomaton.next(this.charState, lower);
+                this.reportChars();
+            } else {
+                this.charState = KeyMatcher.this.charAutomaton.next(this.charState, Character.highSurrogate(lower));
+                this.reportChars();
+                this.charState = KeyMatcher.this.charAutomaton.next(this.charState, Character.lowSurrogate(lower));
+                this.reportChars();
+            }
+        }
+
+        private void reportChars() {
+            final AhoCorasick chars = KeyMatcher.this.charAutomaton;
+            for (int o = chars.firstOutput(this.charState); o != -1; o = chars.nextOutput(o)) {
+                this.found.set(KeyMatcher.this.charKeyIds[chars.patternAt(o)]);
+            }
+        }
+
+    }
+
+}
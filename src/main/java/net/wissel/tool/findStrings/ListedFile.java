@@ -0,0 +1,71 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A file as listed by {@link TreeDir}, size and modification time come from
+ * the attributes of the listing. Matching and the scan cache ask for both,
+ * without another stat per file
+ *
+ * @author swissel
+ *
+ */
+class ListedFile extends File {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long length;
+    private final long lastModified;
+
+    /**
+     * @param path
+     *            the file
+     * @param attributes
+     *            its attributes as listed
+     */
+    ListedFile(final Path path, final BasicFileAttributes attributes) {
+        super(path.toString());
+        this.length = attributes.size();
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * @see java.io.File#length()
+     */
+    @Override
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * @see java.io.File#lastModified()
+     */
+    @Override
+    public long lastModified() {
+        return this.lastModified;
+    }
+
+}
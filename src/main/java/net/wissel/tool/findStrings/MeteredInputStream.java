@@ -0,0 +1,80 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes and the time spent reading from the wrapped stream, used
+ * to tell inflating apart from matching. Not thread safe
+ *
+ * @author swissel
+ *
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    private long bytes = 0;
+    private long nanos = 0;
+
+    MeteredInputStream(final InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final long start = System.nanoTime();
+        final int result = super.read();
+        this.nanos += System.nanoTime() - start;
+        if (result > -1) {
+            this.bytes++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final long start = System.nanoTime();
+        final int result = super.read(b, off, len);
+        this.nanos += System.nanoTime() - start;
+        if (result > 0) {
+            this.bytes += result;
+        }
+        return result;
+    }
+
+    /**
+     * @return bytes read so far
+     */
+    long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * @return nanoseconds spent reading so far
+     */
+    long getNanos() {
+        return this.nanos;
+    }
+
+}
@@ -0,0 +1,85 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes every hit the moment it is found as one JSON object per line
+ * (NDJSON) with key, file and - for entries inside archives - the archive
+ * path. Nothing is kept in memory
+ *
+ * @author swissel
+ *
+ */
+public class NdjsonHitWriter implements HitCollector {
+
+    private static final String ARCHIVE_SEPARATOR = "!/";
+
+    private final PrintStream out;
+
+    /**
+     * @param out
+     *            where the lines go
+     */
+    public NdjsonHitWriter(final PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @see net.wissel.tool.findStrings.HitCollector#addHits(java.lang.String,
+     *      java.util.Collection)
+     */
+    @Override
+    public void addHits(final String fileName, final Collection<String> foundKeys) {
+        final int archiveEnd = fileName.lastIndexOf(NdjsonHitWriter.ARCHIVE_SEPARATOR);
+        final String archive = (archiveEnd < 0) ? null : fileName.substring(0, archiveEnd);
+        for (final String key : foundKeys) {
+            // println is synchronized, so lines from different threads don't mix
+            this.out.println(this.toLine(key, fileName, archive));
+        }
+    }
+
+    private String toLine(final String key, final String fileName, final String archive) {
+        final StringWriter line = new StringWriter();
+        try (final JsonWriter json = new JsonWriter(line)) {
+            json.beginObject();
+            json.name("key").value(key);
+            json.name("file").value(fileName);
+            if (archive != null) {
+                json.name("archive").value(archive);
+            }
+            json.endObject();
+        } catch (final IOException e) {
+            // StringWriter doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return line.toString();
+    }
+
+}
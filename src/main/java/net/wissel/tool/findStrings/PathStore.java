@@ -0,0 +1,333 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Interns report names as a trie of path segments, so a directory prefix
+ * shared by many files is stored once and a file is identified by an int.
+ * A trie node is its parent and the UTF-8 bytes of its segment in a shared
+ * byte pool, the child lookup is a flat open addressing table of node ids.
+ * Not thread safe, concurrent writers fill stores of their own and copy them
+ * into one with {@link #copyInto(PathStore)}
+ *
+ * @author swissel
+ *
+ */
+final class PathStore {
+
+    private static final char SEPARATOR = '/';
+    private static final int  NO_NODE   = -1;
+    private static final int  INITIAL   = 64;
+
+    /* Segment names of all nodes back to back, node n owns nameStart[n] .. nameStart[n + 1] */
+    private byte[] pool      = new byte[PathStore.INITIAL * 16];
+    private int[]  nameStart = new int[PathStore.INITIAL + 1];
+    private int[]  parent    = new int[PathStore.INITIAL];
+    private int    nodeCount;
+
+    /* Node ids hashed by (parent, segment) */
+    private int[] children = PathStore.emptyTable(PathStore.INITIAL * 2);
+
+    private static int[] emptyTable(final int size) {
+        final int[] table = new int[size];
+        Arrays.fill(table, PathStore.NO_NODE);
+        return table;
+    }
+
+    /**
+     * @param path
+     *            a report name, segments separated by /
+     * @return the id of the path, the same for equal paths
+     */
+    int intern(final String path) {
+        int node = PathStore.NO_NODE;
+        int start = 0;
+        while (true) {
+            final int end = path.indexOf(PathStore.SEPARATOR, start);
+            final String segment = (end < 0) ? path.substring(start) : path.substring(start, end);
+            final byte[] name = segment.getBytes(StandardCharsets.UTF_8);
+            node = this.child(node, name, 0, name.length);
+            if (end < 0) {
+                return node;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @param id
+     *            an id returned by intern
+     * @return the path
+     */
+    String path(final int id) {
+        int length = -1;
+        for (int n = id; n != PathStore.NO_NODE; n = this.parent[n]) {
+            length += this.nameStart[n + 1] - this.nameStart[n] + 1;
+        }
+        final byte[] bytes = new byte[length];
+        int end = length;
+        for (int n = id; n != PathStore.NO_NODE; n = this.parent[n]) {
+            final int nameLength = this.nameStart[n + 1] - this.nameStart[n];
+            end -= nameLength;
+            System.arraycopy(this.pool, this.nameStart[n], bytes, end, nameLength);
+            if (end > 0) {
+                bytes[--end] = PathStore.SEPARATOR;
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds all paths of this store to another one
+     *
+     * @param target
+     *            the store to add to
+     * @return the id in the target for every id of this store
+     */
+    int[] copyInto(final PathStore target) {
+        final int[] ids = new int[this.nodeCount];
+        // A parent is always created before its children
+        for (int node = 0; node < this.nodeCount; node++) {
+            final int parentNode = this.parent[node];
+            final int start = this.nameStart[node];
+            ids[node] = target.child((parentNode == PathStore.NO_NODE) ? PathStore.NO_NODE : ids[parentNode],
+                    this.pool, start, this.nameStart[node + 1] - start);
+        }
+        return ids;
+    }
+
+    /**
+     * Orders all paths as Strings, which is the order the reports list files
+     * in. Walks the trie depth first with the children of a node sorted by
+     * segment, no path gets built. A node and its subtree are sorted as two
+     * entries, "a" and "a/", since "a.b" sorts between "a" and "a/x"
+     *
+     * @return rank of every id, ids compare like their paths
+     */
+    int[] ranks() {
+        // Children grouped by parent, group 0 are the roots, group n + 1 the children of n
+        final int[] groupStart = new int[this.nodeCount + 2];
+        for (int node = 0; node < this.nodeCount; node++) {
+            groupStart[this.parent[node] + 2]++;
+        }
+        for (int g = 1; g < groupStart.length; g++) {
+            groupStart[g] += groupStart[g - 1];
+        }
+        final int[] next = Arrays.copyOf(groupStart, this.nodeCount + 1);
+        final int[] members = new int[this.nodeCount];
+        for (int node = 0; node < this.nodeCount; node++) {
+            members[next[this.parent[node] + 1]++] = node;
+        }
+
+        // Entry 2n is node n itself, 2n + 1 the subtree below n
+        final int[] rank = new int[this.nodeCount];
+        final int[] stack = new int[this.nodeCount * 2];
+        int top = this.pushGroup(0, groupStart, members, stack, 0);
+        int nextRank = 0;
+        while (top > 0) {
+            final int entry = stack[--top];
+            if ((entry & 1) == 0) {
+                rank[entry >> 1] = nextRank++;
+            } else {
+                top = this.pushGroup((entry >> 1) + 1, groupStart, members, stack, top);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @param ids
+     *            path ids in the order to list them, the array is kept
+     * @return a read only set materializing the paths while iterating
+     */
+    Set<String> view(final int[] ids) {
+        return new AbstractSet<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < ids.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (this.next >= ids.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return PathStore.this.path(ids[this.next++]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    /**
+     * Pushes the sorted entries of a group, the first one ends up on top
+     *
+     * @return the new stack size
+     */
+    private int pushGroup(final int group, final int[] groupStart, final int[] members, final int[] stack,
+            final int top) {
+        final int size = groupStart[group + 1] - groupStart[group];
+        if (size == 0) {
+            return top;
+        }
+        final List<Integer> entries = new ArrayList<>(size * 2);
+        for (int i = groupStart[group]; i < groupStart[group + 1]; i++) {
+            final int node = members[i];
+            entries.add(node << 1);
+            if (groupStart[node + 2] > groupStart[node + 1]) {
+                entries.add((node << 1) | 1);
+            }
+        }
+        entries.sort(this::compareEntries);
+        int result = top;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            stack[result++] = entries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the segments of two entries, a subtree entry has a / appended.
+     * UTF-8 bytes order like code points, String.compareTo() orders by UTF-16
+     * chars, see {@link #utf16Order(byte)}
+     */
+    private int compareEntries(final int a, final int b) {
+        final int lengthA = this.entryLength(a);
+        final int lengthB = this.entryLength(b);
+        for (int i = 0; i < Math.min(lengthA, lengthB); i++) {
+            final int diff = this.entryByte(a, i) - this.entryByte(b, i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    private int entryLength(final int entry) {
+        final int node = entry >> 1;
+        return this.nameStart[node + 1] - this.nameStart[node] + (entry & 1);
+    }
+
+    private int entryByte(final int entry, final int index) {
+        final int node = entry >> 1;
+        final int position = this.nameStart[node] + index;
+        return (position < this.nameStart[node + 1]) ? PathStore.utf16Order(this.pool[position]) : PathStore.SEPARATOR;
+    }
+
+    /**
+     * Characters above U+FFFF are surrogate pairs in UTF-16 and sort before
+     * U+E000 .. U+FFFF. Moves their UTF-8 lead bytes (F0 ..) before the ones of
+     * U+E000 .. U+FFFF (EE, EF), all other bytes keep their order
+     */
+    private static int utf16Order(final byte b) {
+        final int value = b & 0xFF;
+        if (value >= 0xF0) {
+            return value - 2;
+        }
+        return (value >= 0xEE) ? value + 5 : value;
+    }
+
+    private int child(final int parentNode, final byte[] name, final int offset, final int length) {
+        final int mask = this.children.length - 1;
+        int slot = PathStore.hash(parentNode, name, offset, length) & mask;
+        while (this.children[slot] != PathStore.NO_NODE) {
+            final int candidate = this.children[slot];
+            if (this.parent[candidate] == parentNode && this.nameEquals(candidate, name, offset, length)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+        final int node = this.nodeCount++;
+        if (node == this.parent.length) {
+            this.parent = Arrays.copyOf(this.parent, node * 2);
+            this.nameStart = Arrays.copyOf(this.nameStart, node * 2 + 1);
+        }
+        final int start = this.nameStart[node];
+        if (start + length > this.pool.length) {
+            this.pool = Arrays.copyOf(this.pool, Math.max(this.pool.length * 2, start + length));
+        }
+        System.arraycopy(name, offset, this.pool, start, length);
+        this.nameStart[node + 1] = start + length;
+        this.parent[node] = parentNode;
+        this.children[slot] = node;
+        if (this.nodeCount * 2 > this.children.length) {
+            this.growChildren();
+        }
+        return node;
+    }
+
+    private boolean nameEquals(final int node, final byte[] name, final int offset, final int length) {
+        final int start = this.nameStart[node];
+        if (this.nameStart[node + 1] - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.pool[start + i] != name[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growChildren() {
+        this.children = PathStore.emptyTable(this.children.length * 2);
+        final int mask = this.children.length - 1;
+        for (int node = 0; node < this.nodeCount; node++) {
+            final int start = this.nameStart[node];
+            int slot = PathStore.hash(this.parent[node], this.pool, start, this.nameStart[node + 1] - start) & mask;
+            while (this.children[slot] != PathStore.NO_NODE) {
+                slot = (slot + 1) & mask;
+            }
+            this.children[slot] = node;
+        }
+    }
+
+    private static int hash(final int parentNode, final byte[] bytes, final int offset, final int length) {
+        int h = parentNode;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        final long mixed = h * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+}
@@ -0,0 +1,119 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.util.List;
+
+/**
+ * Rabin-Karp prefilter for large key sets. The first bytes of every key are
+ * hashed into a bitset, a position in the content can only start a match if
+ * the rolling hash of the window starting there has its bit set. Positions
+ * failing that test never reach the automaton, which saves the cache misses
+ * of walking a big automaton over content that can't match.
+ *
+ * A bit can be set by another key's window, so a hit is a candidate only,
+ * but a miss is certain
+ *
+ * @author swissel
+ *
+ */
+final class Prefilter {
+
+    /** Longest window hashed, keys are usually longer */
+    static final int MAX_WINDOW = 8;
+
+    private static final int BASE          = 0x01000193;
+    private static final int SPREAD        = 0x9E3779B9;
+    private static final int BITS_PER_KEY  = 32;
+    private static final int MIN_TABLE_LOG = 16;
+    private static final int MAX_TABLE_LOG = 24;
+
+    private final int    window;
+    private final int    outFactor;
+    private final long[] bits;
+    private final int    shift;
+
+    /**
+     * @param patterns
+     *            the folded patterns, none of them empty
+     * @param window
+     *            the window length, at most the shortest pattern length
+     */
+    Prefilter(final List<int[]> patterns, final int window) {
+        this.window = window;
+        int factor = 1;
+        for (int i = 1; i < window; i++) {
+            factor *= Prefilter.BASE;
+        }
+        this.outFactor = factor;
+
+        final int wanted = 32 - Integer.numberOfLeadingZeros(Math.max(1, patterns.size() * Prefilter.BITS_PER_KEY - 1));
+        final int tableLog = Math.max(Prefilter.MIN_TABLE_LOG, Math.min(Prefilter.MAX_TABLE_LOG, wanted));
+        this.bits = new long[(1 << tableLog) >>> 6];
+        this.shift = 32 - tableLog;
+        for (final int[] p : patterns) {
+            int hash = 0;
+            for (int i = 0; i < window; i++) {
+                hash = this.roll(hash, 0, p[i]);
+            }
+            final int slot = this.slot(hash);
+            this.bits[slot >>> 6] |= 1L << slot;
+        }
+    }
+
+    /**
+     * @return number of bytes hashed per position
+     */
+    int window() {
+        return this.window;
+    }
+
+    /**
+     * Moves the window one byte on
+     *
+     * @param hash
+     *            hash of the current window
+     * @param out
+     *            the byte leaving the window, 0 while the window fills up
+     * @param in
+     *            the byte entering the window
+     * @return hash of the new window
+     */
+    int roll(final int hash, final int out, final int in) {
+        return (hash - out * this.outFactor) * Prefilter.BASE + in;
+    }
+
+    /**
+     * @param hash
+     *            hash of a full window
+     * @return false if no key starts with the window
+     */
+    boolean mayStart(final int hash) {
+        final int slot = this.slot(hash);
+        return (this.bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private int slot(final int hash) {
+        return (hash * Prefilter.SPREAD) >>> this.shift;
+    }
+
+}
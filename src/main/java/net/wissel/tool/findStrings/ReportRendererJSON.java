@@ -21,16 +21,21 @@
  */
 package net.wissel.tool.findStrings;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 /**
+ * Streams the report as JSON: an array holding the keys object and the
+ * results object. Nothing is built in memory, so the size of the result does
+ * not matter
+ *
  * @author swissel
  *
  */
@@ -41,11 +46,34 @@ public class ReportRendererJSON implements ReportRenderer {
      */
     @Override
     public void render(Map<String, Set<String>> results, Map<String, String> keys, PrintStream out) {
-        Collection<Object> result = new ArrayList<>();
-       result.add(keys);
-       result.add(results);
-       Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        out.print(gson.toJson(result));  
+        try {
+            final JsonWriter json = new JsonWriter(
+                    new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            json.setIndent("  ");
+            json.setHtmlSafe(true);
+            json.beginArray();
+
+            json.beginObject();
+            for (final Map.Entry<String, String> key : keys.entrySet()) {
+                json.name(key.getKey()).value(key.getValue());
+            }
+            json.endObject();
+
+            json.beginObject();
+            for (final Map.Entry<String, Set<String>> hit : results.entrySet()) {
+                json.name(hit.getKey()).beginArray();
+                for (final String f : hit.getValue()) {
+                    json.value(f);
+                }
+                json.endArray();
+            }
+            json.endObject();
+
+            json.endArray();
+            json.flush();
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
     }
 
 }
@@ -25,23 +25,22 @@ import java.io.PrintStream;
 import java.util.Map;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
+ * Writes the report as XML with a StAX writer, element by element, so no
+ * document tree is held in memory
+ *
  * @author swissel
  *
  */
 public class ReportRendererXML implements ReportRenderer {
 
+    private static final String ENCODING = "UTF-8";
+    private static final String INDENT   = "  ";
+
     /**
      * @see net.wissel.tool.findStrings.ReportRenderer#render(java.util.Map,
      *      java.util.Map, java.io.PrintStream)
@@ -50,44 +49,57 @@ public class ReportRendererXML implements ReportRenderer {
     public void render(Map<String, Set<String>> results, Map<String, String> keys, PrintStream out) {
 
         try {
-            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+            final XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out,
+                    ReportRendererXML.ENCODING);
+            xml.writeStartDocument(ReportRendererXML.ENCODING, "1.0");
+            this.newLine(xml, 0);
+            xml.writeStartElement("result");
+
+            // The keys we looked for
+            this.newLine(xml, 1);
+            xml.writeStartElement("keys");
+            for (final String v : keys.values()) {
+                this.newLine(xml, 2);
+                xml.writeStartElement("key");
+                xml.writeCharacters(v);
+                xml.writeEndElement();
+            }
+            this.newLine(xml, 1);
+            xml.writeEndElement();
 
-            // root elements
-            final Document doc = docBuilder.newDocument();
-            final Element rootElement = doc.createElement("result");
-            final Element keyRoot = doc.createElement("keys");
-            keys.forEach((k,v) -> {
-               Element key = doc.createElement("key");        
-               key.appendChild(doc.createTextNode(v));
-               keyRoot.appendChild(key);
-            });
-            final Element hitRoot = doc.createElement("hits");
-            results.forEach((key,list) -> {
-                list.forEach(hit -> {
-                    Element hitE = doc.createElement("hit");
-                    hitE.setAttribute("key", key);
-                    hitE.setAttribute("file", hit);
-                    hitRoot.appendChild(hitE);
-                });
-            });
+            // One hit per key and file
+            this.newLine(xml, 1);
+            xml.writeStartElement("hits");
+            for (final Map.Entry<String, Set<String>> hits : results.entrySet()) {
+                for (final String hit : hits.getValue()) {
+                    this.newLine(xml, 2);
+                    xml.writeEmptyElement("hit");
+                    xml.writeAttribute("file", hit);
+                    xml.writeAttribute("key", hits.getKey());
+                }
+            }
+            this.newLine(xml, 1);
+            xml.writeEndElement();
 
             // Finally the root
-            rootElement.appendChild(keyRoot);
-            rootElement.appendChild(hitRoot);
-            doc.appendChild(rootElement);
-            
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(out);
-            transformer.transform(source, result);
-        } catch (Exception e) {
+            this.newLine(xml, 0);
+            xml.writeEndElement();
+            this.newLine(xml, 0);
+            xml.writeEndDocument();
+            xml.flush();
+            xml.close();
+            out.flush();
+        } catch (final XMLStreamException e) {
             e.printStackTrace();
         }
     }
 
+    private void newLine(final XMLStreamWriter xml, final int level) throws XMLStreamException {
+        final StringBuilder b = new StringBuilder("\n");
+        for (int i = 0; i < level; i++) {
+            b.append(ReportRendererXML.INDENT);
+        }
+        xml.writeCharacters(b.toString());
+    }
+
 }
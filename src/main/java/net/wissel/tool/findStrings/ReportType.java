@@ -26,5 +26,5 @@ package net.wissel.tool.findStrings;
  *
  */
 public enum ReportType {
-    MARKDOWN, XML, JSON
+    MARKDOWN, XML, JSON, NDJSON
 }
@@ -0,0 +1,225 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Collects which key was found in which file. Keys and files get dense ids,
+ * the hits of a key are a compressed bitmap of file ids in a
+ * {@link HitMatrix}. Safe for concurrent writers without a global lock: a
+ * file goes to one of a few partials picked by a hash of its name, each with
+ * its own matrix and {@link PathStore} for the file names. The id of a file
+ * carries the partial in its low bits, so all partials share one id space and
+ * merging them when the results are read is a bitwise OR. Queries over keys
+ * are set operations on the merged rows
+ *
+ * @author swissel
+ *
+ */
+public class ResultCollector implements HitCollector {
+
+    /**
+     * Files of one hash range and their hits, locked while used
+     */
+    private static final class Partial {
+        private final PathStore paths = new PathStore();
+        private final HitMatrix hits;
+
+        private Partial(final int keyCount) {
+            this.hits = new HitMatrix(keyCount);
+        }
+    }
+
+    /**
+     * All partials merged, with the file names in one store and their order
+     */
+    private final class Snapshot {
+        private final HitMatrix hits  = new HitMatrix(ResultCollector.this.keyNames.length);
+        private final PathStore paths = new PathStore();
+        private final int[][]   pathIds;
+        private final int[]     rank;
+        private final int[]     byRank;
+
+        private Snapshot() {
+            final Partial[] all = ResultCollector.this.partials;
+            this.pathIds = new int[all.length][];
+            for (int i = 0; i < all.length; i++) {
+                synchronized (all[i]) {
+                    this.hits.or(all[i].hits);
+                    this.pathIds[i] = all[i].paths.copyInto(this.paths);
+                }
+            }
+            this.rank = this.paths.ranks();
+            this.byRank = new int[this.rank.length];
+            for (int id = 0; id < this.rank.length; id++) {
+                this.byRank[this.rank[id]] = id;
+            }
+        }
+
+        /**
+         * @param files
+         *            file ids
+         * @return the file names ordered by rank
+         */
+        private Set<String> sortedView(final int[] files) {
+            final int[] ranks = new int[files.length];
+            for (int i = 0; i < files.length; i++) {
+                final int[] pathIds = this.pathIds[files[i] & ResultCollector.this.partialMask];
+                ranks[i] = this.rank[pathIds[files[i] >>> ResultCollector.this.partialBits]];
+            }
+            Arrays.sort(ranks);
+            for (int r = 0; r < ranks.length; r++) {
+                ranks[r] = this.byRank[ranks[r]];
+            }
+            return this.paths.view(ranks);
+        }
+    }
+
+    private final String[]             keyNames;
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private final Partial[]            partials;
+    private final int                  partialBits;
+    private final int                  partialMask;
+
+    /**
+     * @param keys
+     *            the (case folded) keys, hits for other keys are ignored
+     */
+    public ResultCollector(final Collection<String> keys) {
+        this.keyNames = new TreeSet<>(keys).toArray(new String[0]);
+        for (int id = 0; id < this.keyNames.length; id++) {
+            this.keyIds.put(this.keyNames[id], id);
+        }
+        // Power of two, about two per core
+        this.partials = new Partial[Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 2];
+        this.partialBits = Integer.numberOfTrailingZeros(this.partials.length);
+        this.partialMask = this.partials.length - 1;
+        for (int i = 0; i < this.partials.length; i++) {
+            this.partials[i] = new Partial(this.keyNames.length);
+        }
+    }
+
+    /**
+     * @see net.wissel.tool.findStrings.HitCollector#addHits(java.lang.String,
+     *      java.util.Collection)
+     */
+    @Override
+    public void addHits(final String fileName, final Collection<String> foundKeys) {
+        if (foundKeys.isEmpty()) {
+            return;
+        }
+        // The same name always lands in the same partial, so it has one id
+        final int hash = fileName.hashCode();
+        final int index = (hash ^ (hash >>> 16)) & this.partialMask;
+        final Partial partial = this.partials[index];
+        synchronized (partial) {
+            final int fileId = (partial.paths.intern(fileName) << this.partialBits) | index;
+            for (final String key : foundKeys) {
+                final Integer keyId = this.keyIds.get(key);
+                if (keyId != null) {
+                    partial.hits.set(keyId, fileId);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if nothing was found
+     */
+    public boolean isEmpty() {
+        for (final Partial p : this.partials) {
+            synchronized (p) {
+                if (!p.hits.isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Snapshot of the results for rendering. Keys and file names are sorted,
+     * so the outcome does not depend on the order files were scanned in. The
+     * file name sets are views, names are built while iterating
+     *
+     * @return key -> files the key was found in
+     */
+    public Map<String, Set<String>> getResults() {
+        final Snapshot snapshot = new Snapshot();
+        final Map<String, Set<String>> result = new TreeMap<>();
+        for (int key = 0; key < this.keyNames.length; key++) {
+            final int[] files = snapshot.hits.files(key);
+            if (files.length > 0) {
+                result.put(this.keyNames[key], snapshot.sortedView(files));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param keys
+     *            the (case folded) keys
+     * @return the files containing every one of the keys, sorted, empty for
+     *         no keys or an unknown one
+     */
+    public Set<String> filesMatchingAll(final Collection<String> keys) {
+        final int[] ids = new int[keys.size()];
+        int i = 0;
+        for (final String key : keys) {
+            final Integer keyId = this.keyIds.get(key);
+            if (keyId == null) {
+                return Collections.emptySet();
+            }
+            ids[i++] = keyId;
+        }
+        final Snapshot snapshot = new Snapshot();
+        return snapshot.sortedView(snapshot.hits.filesMatchingAll(ids));
+    }
+
+    /**
+     * @return the keys not found in any file, sorted
+     */
+    public Set<String> keysNeverFound() {
+        final HitMatrix merged = new HitMatrix(this.keyNames.length);
+        for (final Partial p : this.partials) {
+            synchronized (p) {
+                merged.or(p.hits);
+            }
+        }
+        final BitSet never = merged.keysNeverFound();
+        final Set<String> result = new TreeSet<>();
+        for (int key = never.nextSetBit(0); key >= 0; key = never.nextSetBit(key + 1)) {
+            result.add(this.keyNames[key]);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,184 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Remembers the hits of every scanned file between runs. A file is
+ * identified by its path, size, modification time and optionally a hash of
+ * its content. The cache is only valid for the key set it was built with,
+ * a different key file starts a fresh cache
+ *
+ * @author swissel
+ *
+ */
+public class ScanCache {
+
+    private static final int CACHE_VERSION = 1;
+
+    /**
+     * What gets written to disk
+     */
+    private static class CacheContent {
+        int                     version;
+        String                  fingerprint;
+        Map<String, CacheEntry> entries;
+    }
+
+    /**
+     * One scanned file or archive
+     */
+    private static class CacheEntry {
+        long                     size;
+        long                     modified;
+        String                   hash;
+        /** Report name -> keys found, only names with hits */
+        Map<String, Set<String>> hits;
+    }
+
+    /**
+     * Fingerprint of a key set. The start directory is part of it, since the
+     * cached report names are relative to it
+     *
+     * @param startDir
+     *            the directory the scan starts in
+     * @param keys
+     *            the (case folded) keys
+     * @param settings
+     *            options changing which files get matched, empty for none
+     * @return a hash over the start directory, settings and the sorted keys
+     */
+    public static String fingerprint(final File startDir, final Collection<String> keys, final String settings) {
+        final String prefix = settings.isEmpty() ? "" : settings + "\n";
+        final String allKeys = prefix + startDir.getAbsolutePath() + "\n" + String.join("\n", new TreeSet<>(keys));
+        return Hashing.sha256().hashString(allKeys, StandardCharsets.UTF_8).toString();
+    }
+
+    private final File                    cacheFile;
+    private final String                  fingerprint;
+    private final boolean                 useHash;
+    private final Map<String, CacheEntry> previous = new ConcurrentHashMap<>();
+    private final Map<String, CacheEntry> current  = new ConcurrentHashMap<>();
+
+    /**
+     * Loads an existing cache, a missing, unreadable or outdated cache file
+     * results in an empty cache
+     *
+     * @param cacheFile
+     *            where the cache lives
+     * @param fingerprint
+     *            fingerprint of the current key set
+     * @param useHash
+     *            compare content hashes in addition to size and time
+     */
+    public ScanCache(final File cacheFile, final String fingerprint, final boolean useHash) {
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+        this.useHash = useHash;
+        if (cacheFile.exists()) {
+            try (final Reader in = Files.newReader(cacheFile, StandardCharsets.UTF_8)) {
+                final CacheContent content = new Gson().fromJson(in, CacheContent.class);
+                if (content != null && content.version == ScanCache.CACHE_VERSION
+                        && fingerprint.equals(content.fingerprint) && content.entries != null) {
+                    this.previous.putAll(content.entries);
+                }
+            } catch (final IOException | JsonParseException e) {
+                System.err.println("Ignoring scan cache " + cacheFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Looks up the hits of an unchanged file. A hit carries the entry over to
+     * the cache written at the end of this run
+     *
+     * @param f
+     *            the file or archive on disk
+     * @return report name -> keys or null if the file needs to be scanned
+     * @throws IOException
+     */
+    public Map<String, Set<String>> lookup(final File f) throws IOException {
+        final String path = f.getAbsolutePath();
+        final CacheEntry entry = this.previous.get(path);
+        if (entry == null || entry.size != f.length() || entry.modified != f.lastModified()) {
+            return null;
+        }
+        if (this.useHash && (entry.hash == null || !entry.hash.equals(this.hash(f)))) {
+            return null;
+        }
+        this.current.put(path, entry);
+        return entry.hits;
+    }
+
+    /**
+     * Records the hits of a freshly scanned file
+     *
+     * @param f
+     *            the file or archive on disk
+     * @param hits
+     *            report name -> keys, names without hits can be left out
+     * @throws IOException
+     */
+    public void store(final File f, final Map<String, Set<String>> hits) throws IOException {
+        final CacheEntry entry = new CacheEntry();
+        entry.size = f.length();
+        entry.modified = f.lastModified();
+        entry.hash = this.useHash ? this.hash(f) : null;
+        entry.hits = hits;
+        this.current.put(f.getAbsolutePath(), entry);
+    }
+
+    /**
+     * Writes all files seen in this run, files no longer present drop out
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        final CacheContent content = new CacheContent();
+        content.version = ScanCache.CACHE_VERSION;
+        content.fingerprint = this.fingerprint;
+        content.entries = this.current;
+        try (final Writer out = Files.newWriter(this.cacheFile, StandardCharsets.UTF_8)) {
+            new Gson().toJson(content, out);
+        }
+    }
+
+    private String hash(final File f) throws IOException {
+        return Files.asByteSource(f).hash(Hashing.sha256()).toString();
+    }
+
+}
@@ -0,0 +1,147 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+/**
+ * Emits Java Flight Recorder events for file scans, archive expansion and
+ * rendering. The events live in src/main/jfr and are only compiled when
+ * building with JDK 11 or newer (profile jfr), the base sources build on
+ * Java 8. They are loaded by name, so without them or on a runtime without
+ * JFR (before 8u262) all methods do nothing; event handles are passed
+ * around as Object
+ *
+ * @author swissel
+ *
+ */
+final class ScanEvents {
+
+    /**
+     * Records the events, implemented by JfrEvents
+     */
+    interface Recorder {
+        Object beginFileScan();
+
+        void endFileScan(Object handle, String path, long size, int hits);
+
+        Object beginArchive();
+
+        void endArchive(Object handle, String path, long entries, long inflatedBytes, boolean inMemory,
+                boolean complete);
+
+        Object beginRender();
+
+        void endRender(Object handle, String format, long keysFound, long hits);
+    }
+
+    private static final String   RECORDER_CLASS = "net.wissel.tool.findStrings.JfrEvents";
+    private static final Recorder RECORDER       = ScanEvents.loadRecorder();
+
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return Class.forName(ScanEvents.RECORDER_CLASS).asSubclass(Recorder.class).getDeclaredConstructor()
+                    .newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            // No JFR in the runtime or built without the events
+            return null;
+        }
+    }
+
+    /**
+     * @return handle to pass to endFileScan or null
+     */
+    static Object beginFileScan() {
+        return (ScanEvents.RECORDER == null) ? null : ScanEvents.RECORDER.beginFileScan();
+    }
+
+    /**
+     * @param handle
+     *            from beginFileScan
+     * @param path
+     *            file or archive entry as reported
+     * @param size
+     *            bytes scanned
+     * @param hits
+     *            number of keys found
+     */
+    static void endFileScan(final Object handle, final String path, final long size, final int hits) {
+        if (handle != null) {
+            ScanEvents.RECORDER.endFileScan(handle, path, size, hits);
+        }
+    }
+
+    /**
+     * @return handle to pass to endArchive or null
+     */
+    static Object beginArchive() {
+        return (ScanEvents.RECORDER == null) ? null : ScanEvents.RECORDER.beginArchive();
+    }
+
+    /**
+     * @param handle
+     *            from beginArchive
+     * @param path
+     *            the archive as reported
+     * @param entries
+     *            number of entries
+     * @param inflatedBytes
+     *            bytes decompressed
+     * @param inMemory
+     *            true when scanned without extracting to disk
+     * @param complete
+     *            false when the inflate limit or an error stopped it early
+     */
+    static void endArchive(final Object handle, final String path, final long entries, final long inflatedBytes,
+            final boolean inMemory, final boolean complete) {
+        if (handle != null) {
+            ScanEvents.RECORDER.endArchive(handle, path, entries, inflatedBytes, inMemory, complete);
+        }
+    }
+
+    /**
+     * @return handle to pass to endRender or null
+     */
+    static Object beginRender() {
+        return (ScanEvents.RECORDER == null) ? null : ScanEvents.RECORDER.beginRender();
+    }
+
+    /**
+     * @param handle
+     *            from beginRender
+     * @param format
+     *            the report format
+     * @param keysFound
+     *            number of keys with hits
+     * @param hits
+     *            number of (key, file) pairs
+     */
+    static void endRender(final Object handle, final String format, final long keysFound, final long hits) {
+        if (handle != null) {
+            ScanEvents.RECORDER.endRender(handle, format, keysFound, hits);
+        }
+    }
+
+    private ScanEvents() {
+        // Static helpers only
+    }
+
+}
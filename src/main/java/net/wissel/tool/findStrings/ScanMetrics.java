@@ -0,0 +1,207 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.io.Files;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Time spent per phase of a scan run plus byte and file counters. All
+ * counters can be updated concurrently. Time of the phases that run inside
+ * the scanner threads is summed over all threads
+ *
+ * @author swissel
+ *
+ */
+public class ScanMetrics {
+
+    /**
+     * The phases of a scan run
+     */
+    public enum Phase {
+        KEY_LOADING(true), TRAVERSAL(true), ZIP_DETECTION(false), EXTRACTION(false), MATCHING(false),
+        RENDERING(true);
+
+        private final boolean wallClock;
+
+        Phase(final boolean wallClock) {
+            this.wallClock = wallClock;
+        }
+    }
+
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    private final Map<Phase, LongAdder> nanos            = new EnumMap<>(Phase.class);
+    private final LongAdder             bytesRead        = new LongAdder();
+    private final LongAdder             bytesInflated    = new LongAdder();
+    private final LongAdder             bytesMatched     = new LongAdder();
+    private final LongAdder             filesScanned     = new LongAdder();
+    private final LongAdder             archivesExpanded = new LongAdder();
+    private final LongAdder             binarySkipped    = new LongAdder();
+
+    public ScanMetrics() {
+        for (final Phase p : Phase.values()) {
+            this.nanos.put(p, new LongAdder());
+        }
+    }
+
+    /**
+     * @param phase
+     *            the phase that took the time
+     * @param startNanos
+     *            System.nanoTime() when the phase started
+     */
+    public void stop(final Phase phase, final long startNanos) {
+        this.nanos.get(phase).add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param phase
+     *            the phase that took the time
+     * @param elapsedNanos
+     *            time spent
+     */
+    public void addTime(final Phase phase, final long elapsedNanos) {
+        this.nanos.get(phase).add(elapsedNanos);
+    }
+
+    /**
+     * @param bytes
+     *            bytes read from plain files
+     */
+    public void addBytesRead(final long bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    /**
+     * @param bytes
+     *            bytes decompressed from archives
+     */
+    public void addBytesInflated(final long bytes) {
+        this.bytesInflated.add(bytes);
+    }
+
+    /**
+     * @param bytes
+     *            bytes run through the matcher, from files or archive entries
+     */
+    public void addBytesMatched(final long bytes) {
+        this.bytesMatched.add(bytes);
+    }
+
+    public void fileScanned() {
+        this.filesScanned.increment();
+    }
+
+    public void archiveExpanded() {
+        this.archivesExpanded.increment();
+    }
+
+    public void binarySkipped() {
+        this.binarySkipped.increment();
+    }
+
+    /**
+     * Prints a human readable summary
+     *
+     * @param out
+     *            where to print to
+     */
+    public void printSummary(final PrintStream out) {
+        out.println("Scan metrics (detection, extraction and matching summed over threads)");
+        for (final Phase p : Phase.values()) {
+            final String line = String.format("  %-14s %10d ms", p.name().toLowerCase(), this.millis(p));
+            switch (p) {
+                case EXTRACTION:
+                    out.println(line + String.format("  %10.1f MB inflated  %8.1f MB/s",
+                            this.megabytes(this.bytesInflated), this.throughput(p, this.bytesInflated)));
+                    break;
+                case MATCHING:
+                    out.println(line + String.format("  %10.1f MB matched   %8.1f MB/s",
+                            this.megabytes(this.bytesMatched), this.throughput(p, this.bytesMatched)));
+                    break;
+                default:
+                    out.println(line);
+                    break;
+            }
+        }
+        out.println(String.format(
+                "  %.1f MB read from files, %d files scanned, %d archives expanded, %d binaries skipped",
+                this.megabytes(this.bytesRead), this.filesScanned.sum(), this.archivesExpanded.sum(),
+                this.binarySkipped.sum()));
+    }
+
+    /**
+     * Writes all metrics as JSON
+     *
+     * @param metricsFile
+     *            the file to write
+     * @throws IOException
+     */
+    public void writeJson(final File metricsFile) throws IOException {
+        final Map<String, Object> phases = new LinkedHashMap<>();
+        for (final Phase p : Phase.values()) {
+            final Map<String, Object> phase = new LinkedHashMap<>();
+            phase.put("millis", this.millis(p));
+            phase.put("wallClock", p.wallClock);
+            phases.put(p.name().toLowerCase(), phase);
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("phases", phases);
+        result.put("bytesRead", this.bytesRead.sum());
+        result.put("bytesInflated", this.bytesInflated.sum());
+        result.put("bytesMatched", this.bytesMatched.sum());
+        result.put("filesScanned", this.filesScanned.sum());
+        result.put("archivesExpanded", this.archivesExpanded.sum());
+        result.put("binarySkipped", this.binarySkipped.sum());
+        result.put("matchingMBperSecond", this.throughput(Phase.MATCHING, this.bytesMatched));
+        result.put("extractionMBperSecond", this.throughput(Phase.EXTRACTION, this.bytesInflated));
+        try (final Writer out = Files.newWriter(metricsFile, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(result, out);
+        }
+    }
+
+    private long millis(final Phase p) {
+        return TimeUnit.NANOSECONDS.toMillis(this.nanos.get(p).sum());
+    }
+
+    private double megabytes(final LongAdder bytes) {
+        return bytes.sum() / ScanMetrics.MEGABYTE;
+    }
+
+    private double throughput(final Phase p, final LongAdder bytes) {
+        final long elapsed = this.nanos.get(p).sum();
+        return (elapsed == 0) ? 0.0 : this.megabytes(bytes) / (elapsed / 1e9);
+    }
+
+}
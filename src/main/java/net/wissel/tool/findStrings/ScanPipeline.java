@@ -0,0 +1,260 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scans a tree in stages connected by bounded queues, each stage with its
+ * own worker threads:
+ *
+ * walk (list directories) -> detect (zip or not) -> extract (archives) or
+ * match (plain files) -> collect (hand hits to the collector)
+ *
+ * A full queue blocks the stage feeding it, so the walker can't race ahead
+ * of slow extraction or matching. Expanded archives are directories to walk
+ * again, that feedback edge is unbounded, otherwise walk and extract could
+ * wait on each other forever. The scan is done when no item is pending in
+ * any stage
+ *
+ * @author swissel
+ *
+ */
+class ScanPipeline {
+
+    /**
+     * Capacity of every bounded queue, raised to the number of its workers so
+     * all their poison pills fit
+     */
+    static final int QUEUE_CAPACITY = 1024;
+
+    /** Poison pill for the file queues */
+    private static final File STOP = new File("");
+
+    /** Poison pill for the directory queue */
+    private static final TreeDir STOP_DIR = new TreeDir(null, null, 0, 0, null);
+
+    /**
+     * Hits of one file on their way to the collector
+     */
+    private static final class Hit {
+        private final String             fileName;
+        private final Collection<String> keys;
+
+        private Hit(final String fileName, final Collection<String> keys) {
+            this.fileName = fileName;
+            this.keys = keys;
+        }
+    }
+
+    /** Poison pill for the hit queue */
+    private static final Hit STOP_HIT = new Hit(null, null);
+
+    /**
+     * Work of a stage on one item
+     */
+    @FunctionalInterface
+    private interface Stage<T> {
+        void process(T item) throws Exception;
+    }
+
+    private final StringFinder finder;
+    private final HitCollector target;
+    private final boolean      extract;
+    private final boolean      deep;
+    private final int[]        workers;
+
+    private final BlockingQueue<TreeDir> dirs     = new LinkedBlockingQueue<>();
+    private final BlockingQueue<File>    detect;
+    private final BlockingQueue<File>    archives;
+    private final BlockingQueue<File>    files;
+    private final BlockingQueue<Hit>     hits;
+
+    private final AtomicLong                 pending = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final List<Thread>               threads = new ArrayList<>();
+
+    /**
+     * @param finder
+     *            the StringFinder doing the actual work
+     * @param target
+     *            receives all hits, from the single collect thread
+     * @param extract
+     *            expand archives
+     * @param deep
+     *            test every file for zip content
+     * @param workers
+     *            worker threads for walk, detect, extract and match
+     */
+    ScanPipeline(final StringFinder finder, final HitCollector target, final boolean extract, final boolean deep,
+            final int[] workers) {
+        this.finder = finder;
+        this.target = target;
+        this.extract = extract;
+        this.deep = deep;
+        this.workers = workers;
+        this.detect = ScanPipeline.bounded(workers[1]);
+        this.archives = ScanPipeline.bounded(workers[2]);
+        this.files = ScanPipeline.bounded(workers[3]);
+        this.hits = ScanPipeline.bounded(1);
+    }
+
+    private static <T> BlockingQueue<T> bounded(final int workerCount) {
+        return new ArrayBlockingQueue<>(Math.max(ScanPipeline.QUEUE_CAPACITY, workerCount));
+    }
+
+    /**
+     * @return the collector the stages report their hits to, it queues them
+     *         for the collect stage
+     */
+    HitCollector collector() {
+        return (fileName, foundKeys) -> this.put(this.hits, new Hit(fileName, foundKeys));
+    }
+
+    /**
+     * Scans all children of a directory and waits for all stages to finish
+     *
+     * @param startDir
+     *            the directory to scan
+     * @throws IOException
+     *             the first failure of any stage
+     */
+    void scan(final TreeDir startDir) throws IOException {
+        this.put(this.dirs, startDir);
+        this.start("walk", this.workers[0], this.dirs, ScanPipeline.STOP_DIR, this::walk);
+        this.start("detect", this.workers[1], this.detect, ScanPipeline.STOP, this::detect);
+        this.start("extract", this.workers[2], this.archives, ScanPipeline.STOP, this::extract);
+        this.start("match", this.workers[3], this.files, ScanPipeline.STOP, this.finder::findKeyInFile);
+        this.start("collect", 1, this.hits, ScanPipeline.STOP_HIT, h -> this.target.addHits(h.fileName, h.keys));
+        try {
+            for (final Thread t : this.threads) {
+                t.join();
+            }
+        } catch (final InterruptedException e) {
+            this.threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            throw new IOException("Scan interrupted", e);
+        }
+        final Throwable t = this.failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new IOException(t);
+        }
+    }
+
+    private void walk(final TreeDir dir) {
+        final List<TreeDir> subDirs = new ArrayList<>();
+        final List<File> children = new ArrayList<>();
+        dir.list(subDirs, children);
+        subDirs.forEach(d -> this.put(this.dirs, d));
+        children.forEach(f -> this.put(this.detect, f));
+    }
+
+    private void detect(final File f) {
+        this.put(this.finder.isZipFile(f, this.deep) ? this.archives : this.files, f);
+    }
+
+    private void extract(final File archive) throws IOException {
+        final File newTarget = this.finder.processArchive(archive, this.extract);
+        if (newTarget != null) {
+            this.put(this.dirs, TreeDir.expanded(newTarget));
+        }
+    }
+
+    private <T> void start(final String name, final int count, final BlockingQueue<T> queue, final T stop,
+            final Stage<T> stage) {
+        for (int i = 0; i < count; i++) {
+            final Thread t = new Thread(() -> this.work(queue, stop, stage), "findStrings-" + name + "-" + i);
+            t.setDaemon(true);
+            this.threads.add(t);
+            t.start();
+        }
+    }
+
+    private <T> void work(final BlockingQueue<T> queue, final T stop, final Stage<T> stage) {
+        try {
+            for (T item = queue.take(); item != stop; item = queue.take()) {
+                try {
+                    // After a failure the queues are only drained
+                    if (this.failure.get() == null) {
+                        stage.process(item);
+                    }
+                } catch (final Throwable t) {
+                    this.failure.compareAndSet(null, t);
+                } finally {
+                    this.done();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an item, blocks while the queue is full
+     */
+    private <T> void put(final BlockingQueue<T> queue, final T item) {
+        this.pending.incrementAndGet();
+        try {
+            queue.put(item);
+        } catch (final InterruptedException e) {
+            this.pending.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scan interrupted", e);
+        }
+    }
+
+    /**
+     * An item is fully processed, items it produced are counted already.
+     * The last one stops all workers, all queues are empty at that point
+     */
+    private void done() {
+        if (this.pending.decrementAndGet() == 0) {
+            this.stopAll(this.dirs, this.workers[0], ScanPipeline.STOP_DIR);
+            this.stopAll(this.detect, this.workers[1], ScanPipeline.STOP);
+            this.stopAll(this.archives, this.workers[2], ScanPipeline.STOP);
+            this.stopAll(this.files, this.workers[3], ScanPipeline.STOP);
+            this.stopAll(this.hits, 1, ScanPipeline.STOP_HIT);
+        }
+    }
+
+    private <T> void stopAll(final BlockingQueue<T> queue, final int count, final T stop) {
+        for (int i = 0; i < count; i++) {
+            queue.add(stop);
+        }
+    }
+
+}
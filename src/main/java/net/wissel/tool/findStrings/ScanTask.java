@@ -0,0 +1,104 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel counterpart of StringFinder.scanTree: one task per directory,
+ * expanded archive or file, executed on a work stealing ForkJoinPool
+ *
+ * @author swissel
+ *
+ */
+class ScanTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient StringFinder finder;
+    private final transient TreeDir      dir;
+    private final File                   entry;
+    private final boolean                extract;
+    private final boolean                deep;
+
+    /**
+     * @param finder
+     *            the StringFinder doing the actual work
+     * @param dir
+     *            directory to process
+     * @param extract
+     *            expand archives
+     * @param deep
+     *            test every file for zip content
+     */
+    ScanTask(final StringFinder finder, final TreeDir dir, final boolean extract, final boolean deep) {
+        this(finder, dir, null, extract, deep);
+    }
+
+    private ScanTask(final StringFinder finder, final TreeDir dir, final File entry, final boolean extract,
+            final boolean deep) {
+        this.finder = finder;
+        this.dir = dir;
+        this.entry = entry;
+        this.extract = extract;
+        this.deep = deep;
+    }
+
+    @Override
+    protected void compute() {
+        try {
+            if (this.dir != null) {
+                this.forkAll(this.dir);
+            } else if (this.finder.isZipFile(this.entry, this.deep)) {
+                final File newTarget = this.finder.processArchive(this.entry, this.extract);
+                if (newTarget != null) {
+                    this.forkAll(TreeDir.expanded(newTarget));
+                }
+            } else {
+                this.finder.findKeyInFile(this.entry);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void forkAll(final TreeDir parent) {
+        final List<TreeDir> dirs = new ArrayList<>();
+        final List<File> files = new ArrayList<>();
+        parent.list(dirs, files);
+        final List<ScanTask> tasks = new ArrayList<>(dirs.size() + files.size());
+        for (final TreeDir d : dirs) {
+            tasks.add(new ScanTask(this.finder, d, null, this.extract, this.deep));
+        }
+        for (final File f : files) {
+            tasks.add(new ScanTask(this.finder, null, f, this.extract, this.deep));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+}
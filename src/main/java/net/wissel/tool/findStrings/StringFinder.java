@@ -21,21 +21,39 @@
  */
 package net.wissel.tool.findStrings;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.apache.commons.cli.CommandLine;
@@ -46,9 +64,10 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
-import com.google.common.base.Charsets;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
 
 /**
  * @author swissel
@@ -68,6 +87,57 @@ public class StringFinder {
     public static final String REPORTFORMAT_LONGNAME = "reportformat";
     public static final String DEEPSCAN              = "x";
     public static final String DEEPSCAN_LONGNAME     = "extensivescan";
+    public static final String MAPTHRESHOLD          = "mt";
+    public static final String MAPTHRESHOLD_LONGNAME = "mapthreshold";
+    public static final String NOEXTRACT             = "nx";
+    public static final String NOEXTRACT_LONGNAME    = "noextract";
+    public static final String CACHE                 = "c";
+    public static final String CACHE_LONGNAME        = "cache";
+    public static final String CACHEHASH             = "ch";
+    public static final String CACHEHASH_LONGNAME    = "cachehash";
+    public static final String METRICS               = "m";
+    public static final String METRICS_LONGNAME      = "metrics";
+    public static final String THREADS               = "t";
+    public static final String THREADS_LONGNAME      = "threads";
+    public static final String PREFILTER             = "pf";
+    public static final String PREFILTER_LONGNAME    = "prefilter";
+    public static final String COMPILE               = "k";
+    public static final String COMPILE_LONGNAME      = "compile";
+    public static final String BINARY                = "b";
+    public static final String BINARY_LONGNAME       = "binary";
+    public static final String BINARYDENY            = "bd";
+    public static final String BINARYDENY_LONGNAME   = "binarydeny";
+    public static final String BINARYALLOW           = "ba";
+    public static final String BINARYALLOW_LONGNAME  = "binaryallow";
+    public static final String VIRTUAL               = "vt";
+    public static final String VIRTUAL_LONGNAME      = "virtualthreads";
+    public static final String PIPELINE              = "p";
+    public static final String PIPELINE_LONGNAME     = "pipeline";
+    public static final String MAXDEPTH              = "md";
+    public static final String MAXDEPTH_LONGNAME     = "maxdepth";
+    public static final String NESTING               = "an";
+    public static final String NESTING_LONGNAME      = "archivenesting";
+    public static final String INFLATELIMIT          = "il";
+    public static final String INFLATELIMIT_LONGNAME = "inflatelimit";
+
+    /** Chunk size for scanning, bounds the memory used per file */
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    /** Directory suffix for archives that have no extension to strip */
+    private static final String EXPANDED_SUFFIX = "_expanded";
+
+    /** Expansion in progress, next to the target as hidden directory */
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    /** Length of the zip signature used for content detection */
+    private static final int ZIP_MAGIC_LENGTH = 4;
+
+    /** Separator between an archive and an entry inside it */
+    private static final String ARCHIVE_SEPARATOR = "!/";
+
+    /** Size of one memory mapped window, a single map is limited to 2GB */
+    private static final long MAP_WINDOW_SIZE = 256L * 1024 * 1024;
+    private static final long MEGABYTE        = 1024L * 1024;
 
     /**
      * @param Command
@@ -79,7 +149,8 @@ public class StringFinder {
         if (sf.parseCommandLine(args)) {
             sf.run();
         }
-        System.out.println("Done");
+        // stdout may carry the report
+        System.err.println("Done");
 
     }
 
@@ -88,12 +159,34 @@ public class StringFinder {
     private File             startDir;
     private String             stringFileName;
 
-    private final Map<String, String>      keys           = new HashMap<>();
-    private final Map<String, Set<String>> results        = new HashMap<>();
-    private boolean                        extractFiles   = true;
-    private String                         outputFileName = null;
-    private ReportType                     reportType     = ReportType.MARKDOWN;
+    private final Map<String, String>      keys            = new HashMap<>();
+    private ResultCollector                results         = null;
+    private HitCollector                   hits            = null;
+    private boolean                        extractFiles    = true;
+    private boolean                        inMemory        = false;
+    private String                         outputFileName  = null;
+    private ReportType                     reportType      = ReportType.MARKDOWN;
     private boolean                        deepScan;
+    private KeyMatcher                     matcher;
+    private final ThreadLocal<byte[]>      scanBuffer      = ThreadLocal
+            .withInitial(() -> new byte[StringFinder.SCAN_BUFFER_SIZE]);
+    private final ThreadLocal<byte[]>      magicBuffer     = ThreadLocal
+            .withInitial(() -> new byte[StringFinder.ZIP_MAGIC_LENGTH]);
+    private int                            threads         = 1;
+    private long                           mapThreshold    = 16 * StringFinder.MEGABYTE;
+    private String                         cacheFileName   = null;
+    private boolean                        cacheHash       = false;
+    private ScanCache                      scanCache       = null;
+    private final ScanMetrics              metrics         = new ScanMetrics();
+    private boolean                        writeMetrics    = false;
+    private boolean                        usePrefilter    = false;
+    private String                         compileFileName = null;
+    private BinaryFilter                   binaryFilter    = null;
+    private int                            maxInFlight     = 0;
+    private int[]                          stageWorkers    = null;
+    private int                            maxDepth        = TreeDir.UNLIMITED;
+    private int                            archiveNesting  = ArchiveBudget.DEFAULT_NESTING;
+    private long                           inflateLimit    = ArchiveBudget.UNLIMITED;
 
     public StringFinder() {
         this.setupOptions();
@@ -113,26 +206,74 @@ public class StringFinder {
         }
 
         if (line != null) {
-            canProceed = (line.hasOption(StringFinder.DIRNAME) && line.hasOption(StringFinder.STRINGFILE));
+            // Compiling the key file doesn't scan anything
+            canProceed = line.hasOption(StringFinder.STRINGFILE)
+                    && (line.hasOption(StringFinder.DIRNAME) || line.hasOption(StringFinder.COMPILE));
             if (line.hasOption(StringFinder.OUTPUT)) {
                 this.outputFileName = line.getOptionValue(StringFinder.OUTPUT);
             }
             if (line.hasOption(StringFinder.NOUNZIP)) {
                 this.extractFiles = false;
             }
+            if (line.hasOption(StringFinder.NOEXTRACT)) {
+                this.inMemory = true;
+            }
             if (line.hasOption(StringFinder.DEEPSCAN)) {
                 this.deepScan = true;
             }
             if (line.hasOption(StringFinder.REPORTFORMAT)) {
                 this.setReportFormat(line.getOptionValue(StringFinder.REPORTFORMAT));
             }
+            if (line.hasOption(StringFinder.CACHE)) {
+                this.cacheFileName = line.getOptionValue(StringFinder.CACHE);
+            }
+            if (line.hasOption(StringFinder.CACHEHASH)) {
+                this.cacheHash = true;
+            }
+            if (line.hasOption(StringFinder.METRICS)) {
+                this.writeMetrics = true;
+            }
+            if (line.hasOption(StringFinder.THREADS)) {
+                this.threads = Math.max(1, Integer.parseInt(line.getOptionValue(StringFinder.THREADS).trim()));
+            }
+            if (line.hasOption(StringFinder.COMPILE)) {
+                this.compileFileName = line.getOptionValue(StringFinder.COMPILE);
+            }
+            if (line.hasOption(StringFinder.PREFILTER)) {
+                this.usePrefilter = true;
+            }
+            if (line.hasOption(StringFinder.BINARY) || line.hasOption(StringFinder.BINARYDENY)
+                    || line.hasOption(StringFinder.BINARYALLOW)) {
+                this.binaryFilter = this.createBinaryFilter(line);
+            }
+            if (line.hasOption(StringFinder.VIRTUAL)) {
+                this.maxInFlight = Math.max(1, Integer.parseInt(line.getOptionValue(StringFinder.VIRTUAL).trim()));
+            }
+            if (line.hasOption(StringFinder.MAXDEPTH)) {
+                this.maxDepth = Math.max(1, Integer.parseInt(line.getOptionValue(StringFinder.MAXDEPTH).trim()));
+            }
+            if (line.hasOption(StringFinder.NESTING)) {
+                this.archiveNesting = Math.max(0, Integer.parseInt(line.getOptionValue(StringFinder.NESTING).trim()));
+            }
+            if (line.hasOption(StringFinder.INFLATELIMIT)) {
+                this.inflateLimit = Long.parseLong(line.getOptionValue(StringFinder.INFLATELIMIT).trim())
+                        * StringFinder.MEGABYTE;
+            }
+            if (line.hasOption(StringFinder.PIPELINE)) {
+                this.stageWorkers = this.parseStageWorkers(line.getOptionValue(StringFinder.PIPELINE));
+            }
+            if (line.hasOption(StringFinder.MAPTHRESHOLD)) {
+                this.mapThreshold = Long.parseLong(line.getOptionValue(StringFinder.MAPTHRESHOLD).trim())
+                        * StringFinder.MEGABYTE;
+            }
         }
 
         if (!canProceed) {
             this.printHelp();
 
         } else {
-            this.startDir = new File(line.getOptionValue(StringFinder.DIRNAME));
+            this.startDir = line.hasOption(StringFinder.DIRNAME) ? new File(line.getOptionValue(StringFinder.DIRNAME))
+                    : null;
             this.stringFileName = line.getOptionValue(StringFinder.STRINGFILE);
         }
 
@@ -140,31 +281,563 @@ public class StringFinder {
     }
 
     public void run() throws Exception {
-        this.populateKeys();
+        long phaseStart = System.nanoTime();
+        final File keyFile = new File(this.stringFileName);
+        if (CompiledKeys.isCompiled(keyFile)) {
+            this.matcher = CompiledKeys.read(keyFile, this.keys, this.usePrefilter);
+        } else {
+            this.populateKeys();
+            this.matcher = new KeyMatcher(this.keys.keySet(), this.usePrefilter);
+        }
+        if (this.usePrefilter && !this.matcher.hasPrefilter()) {
+            System.err.println("Prefilter not used, it needs ASCII keys only");
+        }
+        this.metrics.stop(ScanMetrics.Phase.KEY_LOADING, phaseStart);
+
+        if (this.compileFileName != null) {
+            CompiledKeys.write(new File(this.compileFileName), this.keys, this.matcher);
+            System.out.println("Compiled " + this.keys.size() + " keys into " + this.compileFileName);
+            return;
+        }
 
         if (!this.startDir.isDirectory()) {
             throw new Exception("Input is not a directory");
         }
 
-        final File[] dirs = this.startDir.listFiles();
-        for (final File d : dirs) {
-            this.processEntry(d, this.extractFiles, this.deepScan);
+        this.results = new ResultCollector(this.keys.keySet());
+        this.hits = this.results;
+
+        // NDJSON is written while scanning instead of rendered at the end
+        final PrintStream hitStream = (this.reportType == ReportType.NDJSON) ? this.getOutput() : null;
+        if (hitStream != null) {
+            this.hits = new NdjsonHitWriter(hitStream);
         }
 
-        if (!this.results.isEmpty()) {
+        if (this.cacheFileName != null) {
+            this.scanCache = new ScanCache(new File(this.cacheFileName),
+                    ScanCache.fingerprint(this.startDir, this.keys.keySet(), this.cacheSettings()),
+                    this.cacheHash);
+        }
+
+        phaseStart = System.nanoTime();
+        if (this.maxInFlight > 0) {
+            this.runVirtual();
+        } else if (this.stageWorkers != null) {
+            this.runPipeline();
+        } else if (this.threads > 1) {
+            this.runParallel();
+        } else {
+            this.scanTree(TreeDir.root(this.startDir, this.maxDepth));
+        }
+
+        if (this.scanCache != null) {
+            this.scanCache.save();
+        }
+        this.metrics.stop(ScanMetrics.Phase.TRAVERSAL, phaseStart);
+
+        phaseStart = System.nanoTime();
+        final Object renderEvent = ScanEvents.beginRender();
+        long keysFound = 0;
+        long hitCount = 0;
+        if (hitStream != null) {
+            hitStream.flush();
+            if (hitStream != System.out) {
+                hitStream.close();
+            }
+        } else if (!this.results.isEmpty()) {
             final ReportRenderer r = this.getReportRenderer();
-            r.render(this.results, this.keys, this.getOutput());
+            final Map<String, Set<String>> found = this.results.getResults();
+            r.render(found, this.keys, this.getOutput());
+            keysFound = found.size();
+            hitCount = found.values().stream().mapToLong(Set::size).sum();
+        }
+        ScanEvents.endRender(renderEvent, this.reportType.name(), keysFound, hitCount);
+        this.metrics.stop(ScanMetrics.Phase.RENDERING, phaseStart);
+
+        this.metrics.printSummary(System.err);
+        if (this.writeMetrics) {
+            this.metrics.writeJson(this.getMetricsFile());
         }
     }
 
     /**
-     * Expands a ZIP file, but only if the target directory doesn't exist
+     * @return the options changing which hits get cached, empty for the
+     *         defaults
+     */
+    private String cacheSettings() {
+        final List<String> settings = new ArrayList<>();
+        if (this.deepScan) {
+            settings.add("deep scan");
+        }
+        if (this.inMemory) {
+            settings.add("no extract");
+        }
+        if (this.binaryFilter != null) {
+            settings.add(this.binaryFilter.describe());
+        }
+        if (this.archiveNesting != ArchiveBudget.DEFAULT_NESTING || this.inflateLimit != ArchiveBudget.UNLIMITED) {
+            settings.add("nesting " + this.archiveNesting + ", inflate limit " + this.inflateLimit);
+        }
+        return String.join("\n", settings);
+    }
+
+    /**
+     * @return the metrics file next to the report
+     */
+    private File getMetricsFile() {
+        final String reportName = (this.outputFileName == null) ? "findStrings" : this.outputFileName;
+        return new File(reportName + ".metrics.json");
+    }
+
+    /**
+     * Walks the tree on a work stealing pool, one task per directory and file
+     *
+     * @throws IOException
+     */
+    private void runParallel() throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            pool.invoke(new ScanTask(this, TreeDir.root(this.startDir, this.maxDepth), this.extractFiles,
+                    this.deepScan));
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void runVirtual() throws IOException {
+        if (!VirtualScanner.isAvailable()) {
+            System.err.println("Virtual threads need Java 21+, reading with a pool of platform threads");
+        }
+        // Reads wait on I/O, matching needs a core
+        final int matchers = (this.threads > 1) ? this.threads : Runtime.getRuntime().availableProcessors();
+        new VirtualScanner(this, this.extractFiles, this.deepScan, matchers, this.maxInFlight)
+                .scan(TreeDir.root(this.startDir, this.maxDepth));
+    }
+
+    /**
+     * Walks the tree in stages connected by bounded queues, hits reach the
+     * collector through the collect stage
+     *
+     * @throws IOException
+     */
+    private void runPipeline() throws IOException {
+        final HitCollector target = this.hits;
+        final ScanPipeline pipeline = new ScanPipeline(this, target, this.extractFiles, this.deepScan,
+                this.stageWorkers);
+        this.hits = pipeline.collector();
+        try {
+            pipeline.scan(TreeDir.root(this.startDir, this.maxDepth));
+        } finally {
+            this.hits = target;
+        }
+    }
+
+    /**
+     * Handles an archive found in the tree: scans it in memory or expands it
+     * to disk, depending on the options. Archives nested in it never land on
+     * disk, they are scanned from the stream, also when an earlier run
+     * expanded the archive already
+     *
+     * @param zipFile
+     *            the archive
+     * @param extract
+     *            expand archives to disk
+     * @return the directory to continue scanning or null if there is nothing
+     *         more to scan
+     * @throws IOException
+     */
+    File processArchive(final File zipFile, final boolean extract) throws IOException {
+        if (this.inMemory) {
+            this.scanArchiveInMemory(zipFile);
+            return null;
+        }
+        final File newTarget = this.expandedDir(zipFile);
+        if (extract && this.expandFile(zipFile, newTarget)) {
+            return newTarget;
+        }
+        if (newTarget.isDirectory()) {
+            this.scanNestedArchives(zipFile, newTarget);
+        }
+        return null;
+    }
+
+    /**
+     * Scans an archive without extracting it, unless the scan cache knows it
      * already
      *
+     * @param zipFile
+     *            the archive
+     * @throws IOException
+     */
+    private void scanArchiveInMemory(final File zipFile) throws IOException {
+        if (this.replayFromCache(zipFile)) {
+            return;
+        }
+        final Map<String, Set<String>> archiveHits = new ConcurrentHashMap<>();
+        final BiConsumer<String, Set<String>> sink = this.cachingSink(archiveHits);
+        final ArchiveBudget budget = this.newBudget();
+        try {
+            // Outside a fork join pool the entries would end up on the common pool
+            if (this.threads > 1 && ForkJoinTask.inForkJoinPool()) {
+                this.scanArchiveParallel(zipFile, sink, budget);
+            } else {
+                this.scanArchive(zipFile, sink, budget);
+            }
+        } catch (final ArchiveBudget.ExceededException e) {
+            System.err.println("Stopped scanning " + this.relativeName(zipFile) + ": " + e.getMessage());
+        }
+        if (this.scanCache != null) {
+            this.scanCache.store(zipFile, archiveHits);
+        }
+    }
+
+    /**
+     * @param archiveHits
+     *            receives the hits for the scan cache
+     * @return a sink adding hits to the results, and to archiveHits when
+     *         there is a scan cache
+     */
+    private BiConsumer<String, Set<String>> cachingSink(final Map<String, Set<String>> archiveHits) {
+        if (this.scanCache == null) {
+            return this.hits::addHits;
+        }
+        return (entryName, found) -> {
+            this.hits.addHits(entryName, found);
+            if (!found.isEmpty()) {
+                archiveHits.put(entryName, found);
+            }
+        };
+    }
+
+    /**
+     * Adds the cached hits of an unchanged file or archive to the results
+     *
+     * @param f
+     *            the file or archive
+     * @return true if the cache had it, false if it needs to be scanned
+     * @throws IOException
+     */
+    boolean replayFromCache(final File f) throws IOException {
+        if (this.scanCache == null) {
+            return false;
+        }
+        final Map<String, Set<String>> cached = this.scanCache.lookup(f);
+        if (cached == null) {
+            return false;
+        }
+        cached.forEach(this.hits::addHits);
+        return true;
+    }
+
+    /**
+     * Scans all entries of an archive straight from the ZipInputStream,
+     * nested archives are recursed as streams. Nothing gets written to disk
+     *
+     * @param zipFile
+     *            the archive
+     * @param sink
+     *            receives report name and keys found of every entry
+     * @param budget
+     *            nesting and inflate limits of the archive
+     * @throws IOException
+     */
+    private void scanArchive(final File zipFile, final BiConsumer<String, Set<String>> sink,
+            final ArchiveBudget budget) throws IOException {
+        try (final ZipInputStream zis = new ZipInputStream(
+                new BufferedInputStream(new FileInputStream(zipFile), StringFinder.SCAN_BUFFER_SIZE))) {
+            this.scanZipStream(zis, this.relativeName(zipFile), sink, budget, 0);
+        }
+    }
+
+    /**
+     * Scans an archive using its central directory: every entry becomes a task
+     * on the current ForkJoinPool, so a single large archive is inflated and
+     * scanned by all threads. Must be called from within a ForkJoinPool
+     *
+     * @param zipFile
+     *            the archive
+     * @param sink
+     *            receives report name and keys found of every entry
+     * @param budget
+     *            nesting and inflate limits of the archive
+     * @throws IOException
+     */
+    private void scanArchiveParallel(final File zipFile, final BiConsumer<String, Set<String>> sink,
+            final ArchiveBudget budget) throws IOException {
+        final Object archiveEvent = ScanEvents.beginArchive();
+        final String archiveName = this.relativeName(zipFile);
+        final AtomicLong inflated = new AtomicLong();
+        int entryCount = 0;
+        boolean complete = false;
+        try (final ZipFile zip = new ZipFile(zipFile)) {
+            this.metrics.archiveExpanded();
+            final List<ForkJoinTask<?>> tasks = new ArrayList<>(zip.size());
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry zipEntry = entries.nextElement();
+                if (!zipEntry.isDirectory()) {
+                    tasks.add(ForkJoinTask.adapt(
+                            () -> this.scanZipEntry(zip, zipEntry, archiveName, sink, budget, inflated)));
+                }
+            }
+            entryCount = tasks.size();
+            try {
+                ForkJoinTask.invokeAll(tasks);
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+            complete = true;
+        } finally {
+            // Also when the inflate limit stopped the scan
+            ScanEvents.endArchive(archiveEvent, archiveName, entryCount, inflated.get(), true, complete);
+        }
+    }
+
+    /**
+     * Scans one entry of a random access archive, called concurrently
+     *
+     * @param zip
+     *            the open archive
+     * @param zipEntry
+     *            the entry to scan
+     * @param archiveName
+     *            name of the archive used as prefix for the entry
+     * @param sink
+     *            receives report name and keys found
+     * @param budget
+     *            nesting and inflate limits of the archive
+     * @param inflated
+     *            adds up the bytes inflated
+     */
+    private void scanZipEntry(final ZipFile zip, final ZipEntry zipEntry, final String archiveName,
+            final BiConsumer<String, Set<String>> sink, final ArchiveBudget budget, final AtomicLong inflated) {
+        final String entryName = archiveName + StringFinder.ARCHIVE_SEPARATOR + zipEntry.getName();
+        try (final InputStream in = zip.getInputStream(zipEntry)) {
+            inflated.addAndGet(this.scanEntry(in, zipEntry.getName(), entryName, sink, budget, 0));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scans the remaining entries of a zip stream. The stream is not closed,
+     * so this works for archives nested in another archive's stream
+     *
+     * @param zis
+     *            the zip stream
+     * @param archiveName
+     *            name of the archive used as prefix for the entries
+     * @param sink
+     *            receives report name and keys found of every entry
+     * @param budget
+     *            nesting and inflate limits of the archive in the tree
+     * @param depth
+     *            nesting depth of this archive, 0 for the archive in the tree
+     * @throws IOException
+     */
+    private void scanZipStream(final ZipInputStream zis, final String archiveName,
+            final BiConsumer<String, Set<String>> sink, final ArchiveBudget budget, final int depth)
+            throws IOException {
+        final Object archiveEvent = ScanEvents.beginArchive();
+        this.metrics.archiveExpanded();
+        long entries = 0;
+        long inflated = 0;
+        boolean complete = false;
+        try {
+            ZipEntry zipEntry = zis.getNextEntry();
+            while (zipEntry != null) {
+                if (!zipEntry.isDirectory()) {
+                    final String entryName = archiveName + StringFinder.ARCHIVE_SEPARATOR + zipEntry.getName();
+                    inflated += this.scanEntry(zis, zipEntry.getName(), entryName, sink, budget, depth);
+                    entries++;
+                }
+                zipEntry = zis.getNextEntry();
+            }
+            complete = true;
+        } finally {
+            // Also when the inflate limit stopped the scan
+            ScanEvents.endArchive(archiveEvent, archiveName, entries, inflated, true, complete);
+        }
+    }
+
+    /**
+     * Scans the content of one archive entry or recurses into it when it is an
+     * archive itself. Deep scan detects archives by content, otherwise by name
+     *
+     * @param in
+     *            the entry content, not closed
+     * @param name
+     *            the name of the entry inside its archive
+     * @param entryName
+     *            the full name for the report
+     * @param sink
+     *            receives report name and keys found
+     * @param budget
+     *            nesting and inflate limits of the archive in the tree
+     * @param depth
+     *            nesting depth of the archive containing the entry
+     * @return bytes inflated, 0 for a nested archive
+     * @throws IOException
+     */
+    private long scanEntry(final InputStream in, final String name, final String entryName,
+            final BiConsumer<String, Set<String>> sink, final ArchiveBudget budget, final int depth)
+            throws IOException {
+        final PushbackInputStream content = new PushbackInputStream(in, StringFinder.ZIP_MAGIC_LENGTH);
+        if (this.isNestedArchive(content, name)) {
+            this.scanNestedArchive(content, entryName, sink, budget, depth + 1);
+            return 0;
+        } else {
+            // Time spent reading the entry is inflating, the rest is matching
+            final Object scanEvent = ScanEvents.beginFileScan();
+            final MeteredInputStream metered = new MeteredInputStream(budget.limit(content));
+            final long matchStart = System.nanoTime();
+            final Set<String> matched = this.matchStream(metered, name);
+            final long elapsed = System.nanoTime() - matchStart;
+            this.metrics.addTime(ScanMetrics.Phase.EXTRACTION, metered.getNanos());
+            this.metrics.addTime(ScanMetrics.Phase.MATCHING, elapsed - metered.getNanos());
+            this.metrics.addBytesInflated(metered.getBytes());
+            final Set<String> found;
+            if (matched == null) {
+                this.metrics.binarySkipped();
+                found = Collections.emptySet();
+            } else {
+                this.metrics.addBytesMatched(metered.getBytes());
+                this.metrics.fileScanned();
+                found = matched;
+            }
+            ScanEvents.endFileScan(scanEvent, entryName, metered.getBytes(), found.size());
+            sink.accept(entryName, found);
+            return metered.getBytes();
+        }
+    }
+
+    /**
+     * Tells archive entries that are archives themselves apart from others.
+     * Deep scan detects them by content, otherwise by name
+     *
+     * @param content
+     *            the entry content, the signature bytes are pushed back
+     * @param name
+     *            the name of the entry inside its archive
+     * @return true for a nested archive
+     * @throws IOException
+     */
+    private boolean isNestedArchive(final PushbackInputStream content, final String name) throws IOException {
+        final long detectStart = System.nanoTime();
+        final boolean result = this.deepScan ? this.isZipStream(content) : this.isZipName(name);
+        this.metrics.stop(ScanMetrics.Phase.ZIP_DETECTION, detectStart);
+        return result;
+    }
+
+    /**
+     * Scans an archive inside another archive straight from the parent's
+     * stream, unless it is nested too deep
+     *
+     * @param in
+     *            the entry content, not closed
+     * @param archiveName
+     *            the full name of the nested archive for the report
+     * @param sink
+     *            receives report name and keys found of every entry
+     * @param budget
+     *            nesting and inflate limits of the archive in the tree
+     * @param depth
+     *            nesting depth of the nested archive
+     * @throws IOException
+     */
+    private void scanNestedArchive(final InputStream in, final String archiveName,
+            final BiConsumer<String, Set<String>> sink, final ArchiveBudget budget, final int depth)
+            throws IOException {
+        if (!budget.canOpen(depth)) {
+            System.err.println("Skipping " + archiveName + ", archives are opened " + budget.getMaxNesting()
+                    + " levels deep at most");
+            return;
+        }
+        this.scanZipStream(new ZipInputStream(in), archiveName, sink, budget, depth);
+    }
+
+    /**
+     * Scans the archives inside an archive an earlier run expanded already,
+     * expanding doesn't write them to disk. Their hits are cached with the
+     * archive, so an unchanged archive isn't inflated again. Archives found
+     * on disk, expanded by older versions, are left to the tree walk
+     *
+     * @param zipFile
+     *            the archive
+     * @param targetDir
+     *            the directory it was expanded into
+     * @throws IOException
+     */
+    private void scanNestedArchives(final File zipFile, final File targetDir) throws IOException {
+        if (this.replayFromCache(zipFile)) {
+            return;
+        }
+        final Map<String, Set<String>> archiveHits = new ConcurrentHashMap<>();
+        final BiConsumer<String, Set<String>> sink = this.cachingSink(archiveHits);
+        final ArchiveBudget budget = this.newBudget();
+        try (final ZipFile zip = new ZipFile(zipFile)) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry zipEntry = entries.nextElement();
+                // Without deep scan the name tells, no need to inflate anything
+                if (zipEntry.isDirectory() || !(this.deepScan || this.isZipName(zipEntry.getName()))) {
+                    continue;
+                }
+                final File onDisk = new File(targetDir, zipEntry.getName());
+                if (onDisk.exists()) {
+                    continue;
+                }
+                try (final InputStream in = zip.getInputStream(zipEntry)) {
+                    final PushbackInputStream content = new PushbackInputStream(in, StringFinder.ZIP_MAGIC_LENGTH);
+                    if (this.isNestedArchive(content, zipEntry.getName())) {
+                        this.scanNestedArchive(content, this.relativeName(onDisk), sink, budget, 1);
+                    }
+                }
+            }
+        } catch (final ArchiveBudget.ExceededException e) {
+            System.err.println("Stopped scanning " + this.relativeName(zipFile) + ": " + e.getMessage());
+        }
+        if (this.scanCache != null) {
+            this.scanCache.store(zipFile, archiveHits);
+        }
+    }
+
+    /**
+     * @param zipFile
+     *            an archive
+     * @return the directory next to the archive it gets expanded into, named
+     *         like the archive without extension
+     */
+    private File expandedDir(final File zipFile) {
+        final String zipName = zipFile.getName();
+        final int extensionStart = zipName.lastIndexOf(".");
+        // Deep scan finds archives without extension too
+        final String newDirName = (extensionStart > 0) ? zipName.substring(0, extensionStart)
+                : zipName + StringFinder.EXPANDED_SUFFIX;
+        return new File(zipFile.getParentFile(), newDirName);
+    }
+
+    /**
+     * @return fresh limits for an archive found in the tree
+     */
+    private ArchiveBudget newBudget() {
+        return new ArchiveBudget(this.archiveNesting, this.inflateLimit);
+    }
+
+    /**
+     * Expands a ZIP file, but only if the target directory doesn't exist
+     * already. Nested archives are scanned from the stream instead of being
+     * written, their hits are cached with the archive. Entries are written to
+     * a partial directory that becomes the target once all are written, so an
+     * expansion stopped by the inflate limit or a failure is never taken as
+     * done by a rerun. A stopped archive is scanned in memory instead
+     *
      * @param the
      *            ZIP file
      * @param targetDir
-     * @return
+     * @return true if the target directory was created and needs a scan
      * @throws IOException
      */
     private boolean expandFile(final File f, final File targetDir) throws IOException {
@@ -172,41 +845,264 @@ public class StringFinder {
             return false;
         }
 
-        final ZipInputStream zis = new ZipInputStream(new FileInputStream(f));
-        ZipEntry zipEntry = zis.getNextEntry();
-        while (zipEntry != null) {
-            final File outFile = this.newFile(targetDir, zipEntry);
-
-            final FileOutputStream out = new FileOutputStream(outFile);
-            ByteStreams.copy(zis, out);
-            out.close();
-            zipEntry = zis.getNextEntry();
+        // Left over if an earlier run was killed while expanding
+        final File partialDir = new File(targetDir.getParentFile(),
+                "." + targetDir.getName() + StringFinder.PARTIAL_SUFFIX);
+        if (partialDir.exists()) {
+            MoreFiles.deleteRecursively(partialDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+        // Becomes the target even if all entries are nested archives
+        if (!partialDir.mkdirs()) {
+            throw new IOException("Can't create " + partialDir);
+        }
+        final long start = System.nanoTime();
+        final Object archiveEvent = ScanEvents.beginArchive();
+        final ArchiveBudget budget = this.newBudget();
+        // Reported once the archive is complete, a stopped one is scanned again
+        final Map<String, Set<String>> archiveHits = new ConcurrentHashMap<>();
+        final BiConsumer<String, Set<String>> sink = (entryName, found) -> {
+            if (!found.isEmpty()) {
+                archiveHits.put(entryName, found);
+            }
+        };
+        long entries = 0;
+        long inflated = 0;
+        boolean complete = false;
+        // Scanning nested archives is metered on its own
+        long nestedNanos = 0;
+        try (final ZipInputStream zis = new ZipInputStream(new FileInputStream(f))) {
+            ZipEntry zipEntry = zis.getNextEntry();
+            while (zipEntry != null) {
+                if (!zipEntry.isDirectory()) {
+                    final PushbackInputStream content = new PushbackInputStream(zis, StringFinder.ZIP_MAGIC_LENGTH);
+                    if (this.isNestedArchive(content, zipEntry.getName())) {
+                        final long nestedStart = System.nanoTime();
+                        this.scanNestedArchive(content, this.relativeName(new File(targetDir, zipEntry.getName())),
+                                sink, budget, 1);
+                        nestedNanos += System.nanoTime() - nestedStart;
+                    } else {
+                        try (final FileOutputStream out = new FileOutputStream(this.newFile(partialDir, zipEntry))) {
+                            inflated += ByteStreams.copy(budget.limit(content), out);
+                        }
+                    }
+                    entries++;
+                }
+                zipEntry = zis.getNextEntry();
+            }
+            complete = true;
+        } catch (final ArchiveBudget.ExceededException e) {
+            System.err.println("Stopped expanding " + this.relativeName(f) + ": " + e.getMessage()
+                    + ", scanning it in memory");
+        } finally {
+            ScanEvents.endArchive(archiveEvent, this.relativeName(f), entries, inflated, false, complete);
+            if (!complete) {
+                MoreFiles.deleteRecursively(partialDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+            }
+        }
+        this.metrics.addTime(ScanMetrics.Phase.EXTRACTION, System.nanoTime() - start - nestedNanos);
+        this.metrics.addBytesInflated(inflated);
+        if (!complete) {
+            // Inflates up to the limit once more, but writes nothing
+            this.scanArchiveInMemory(f);
+            return false;
         }
 
-        zis.close();
+        if (!partialDir.renameTo(targetDir)) {
+            MoreFiles.deleteRecursively(partialDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+            throw new IOException("Can't rename " + partialDir + " to " + targetDir);
+        }
+        archiveHits.forEach(this.hits::addHits);
+        if (this.scanCache != null) {
+            this.scanCache.store(f, archiveHits);
+        }
+        this.metrics.archiveExpanded();
         // Unpacking worked!
         return true;
     }
 
-    private void findKeyInFile(final File targetDirOrFile) throws IOException {
-        String fileName = targetDirOrFile.getAbsolutePath().substring(this.startDir.getAbsolutePath().length()+1);
-        final String source = Files.asCharSource(targetDirOrFile, Charsets.UTF_8).read().toLowerCase();
-        this.keys.keySet().forEach(k -> {
-            if (source.indexOf(k) > -1) {
-                final Set<String> thisResult = this.results.containsKey(k) ? this.results.get(k)
-                        : new HashSet<>();
-                thisResult.add(fileName);
-                this.results.put(k, thisResult);
+    void findKeyInFile(final File targetDirOrFile) throws IOException {
+        if (this.replayFromCache(targetDirOrFile)) {
+            return;
+        }
+        this.matchFile(targetDirOrFile, null);
+    }
+
+    /**
+     * Matches a plain file and records its hits
+     *
+     * @param targetDirOrFile
+     *            the file
+     * @param content
+     *            the file content read already or null to read it here
+     * @throws IOException
+     */
+    void matchFile(final File targetDirOrFile, final byte[] content) throws IOException {
+        final String fileName = this.relativeName(targetDirOrFile);
+        final Object scanEvent = ScanEvents.beginFileScan();
+        final long start = System.nanoTime();
+        final long length = (content == null) ? targetDirOrFile.length() : content.length;
+        final Set<String> matched;
+        if (content != null) {
+            matched = this.matchStream(new ByteArrayInputStream(content), targetDirOrFile.getName());
+        } else if (length > this.mapThreshold) {
+            matched = this.findKeyInMappedFile(targetDirOrFile);
+        } else {
+            try (final InputStream in = new FileInputStream(targetDirOrFile)) {
+                matched = this.matchStream(in, targetDirOrFile.getName());
+            }
+        }
+        this.metrics.stop(ScanMetrics.Phase.MATCHING, start);
+        final Set<String> found;
+        if (matched == null) {
+            this.metrics.binarySkipped();
+            found = Collections.emptySet();
+        } else {
+            this.metrics.addBytesRead(length);
+            this.metrics.addBytesMatched(length);
+            this.metrics.fileScanned();
+            found = matched;
+        }
+        ScanEvents.endFileScan(scanEvent, fileName, length, found.size());
+        this.hits.addHits(fileName, found);
+        if (this.scanCache != null) {
+            this.scanCache.store(targetDirOrFile,
+                    found.isEmpty() ? Collections.emptyMap() : Collections.singletonMap(fileName, found));
+        }
+    }
+
+    /**
+     * Scans a large file through the OS page cache without copying it onto
+     * the heap. The file is mapped in windows to stay below the 2GB map limit
+     *
+     * @param f
+     *            the file to scan
+     * @return the keys found or null if the file was skipped as binary
+     * @throws IOException
+     */
+    private Set<String> findKeyInMappedFile(final File f) throws IOException {
+        BinaryFilter.Action action = this.binaryAction(f.getName());
+        if (action == BinaryFilter.Action.SKIP) {
+            return null;
+        }
+        KeyMatcher.Scan scan = null;
+        try (final FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            for (long pos = 0; pos < size; pos += StringFinder.MAP_WINDOW_SIZE) {
+                final long windowSize = Math.min(StringFinder.MAP_WINDOW_SIZE, size - pos);
+                final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, windowSize);
+                if (action == null) {
+                    final byte[] sample = new byte[(int) Math.min(BinaryFilter.SAMPLE_SIZE, windowSize)];
+                    window.duplicate().get(sample);
+                    action = this.binaryFilter.byContent(sample, 0, sample.length);
+                    if (action == BinaryFilter.Action.SKIP) {
+                        return null;
+                    }
+                }
+                if (scan == null) {
+                    scan = (action == BinaryFilter.Action.RAW) ? this.matcher.newRawScan() : this.matcher.newScan();
+                }
+                scan.feed(window);
+            }
+        }
+        return (scan == null) ? Collections.emptySet() : scan.getKeys();
+    }
+
+    /**
+     * Runs the matcher over a stream. With a binary filter the first block
+     * decides if the content is decoded, matched raw or skipped
+     *
+     * @param in
+     *            the content, read up to the end unless skipped
+     * @param name
+     *            file or entry name for the extension lists
+     * @return the keys found or null if the content was skipped as binary
+     * @throws IOException
+     */
+    private Set<String> matchStream(final InputStream in, final String name) throws IOException {
+        final byte[] buffer = this.scanBuffer.get();
+        BinaryFilter.Action action = this.binaryAction(name);
+        if (action == BinaryFilter.Action.SKIP) {
+            return null;
+        }
+        if (action == BinaryFilter.Action.SCAN) {
+            return this.matcher.findIn(in, buffer);
+        }
+        int read = ByteStreams.read(in, buffer, 0, buffer.length);
+        if (action == null) {
+            action = this.binaryFilter.byContent(buffer, 0, read);
+            if (action == BinaryFilter.Action.SKIP) {
+                return null;
             }
-        });
+        }
+        final KeyMatcher.Scan scan = (action == BinaryFilter.Action.RAW) ? this.matcher.newRawScan()
+                : this.matcher.newScan();
+        while (read > 0) {
+            scan.feed(buffer, 0, read);
+            read = in.read(buffer);
+        }
+        return scan.getKeys();
+    }
+
+    /**
+     * @param name
+     *            file or entry name
+     * @return SCAN without binary filter, otherwise the action for the
+     *         extension or null if the content has to decide
+     */
+    private BinaryFilter.Action binaryAction(final String name) {
+        return (this.binaryFilter == null) ? BinaryFilter.Action.SCAN : this.binaryFilter.byName(name);
+    }
+
+    private BinaryFilter createBinaryFilter(final CommandLine line) {
+        final String mode = line.getOptionValue(StringFinder.BINARY, "skip").trim().toLowerCase();
+        if (!"skip".equals(mode) && !"raw".equals(mode)) {
+            System.err.println("Unknown binary handling " + mode + ", using skip");
+        }
+        final List<String> deny = line.hasOption(StringFinder.BINARYDENY)
+                ? Arrays.asList(line.getOptionValue(StringFinder.BINARYDENY).split(","))
+                : BinaryFilter.DEFAULT_DENY;
+        final List<String> allow = line.hasOption(StringFinder.BINARYALLOW)
+                ? Arrays.asList(line.getOptionValue(StringFinder.BINARYALLOW).split(","))
+                : Collections.emptyList();
+        return new BinaryFilter("raw".equals(mode), deny, allow);
+    }
+
+    /**
+     * @param spec
+     *            comma separated worker counts for walk, detect, extract and
+     *            match, missing counts use the defaults
+     * @return the worker count of every stage
+     */
+    private int[] parseStageWorkers(final String spec) {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final int[] result = { 1, 1, Math.max(1, cores / 2), cores };
+        final String[] counts = spec.split(",");
+        for (int i = 0; i < Math.min(counts.length, result.length); i++) {
+            if (!counts[i].trim().isEmpty()) {
+                result[i] = Math.max(1, Integer.parseInt(counts[i].trim()));
+            }
+        }
+        return result;
+    }
 
+    /**
+     * @param f
+     *            a file below the start directory
+     * @return the file name relative to the start directory
+     */
+    private String relativeName(final File f) {
+        return f.getAbsolutePath().substring(this.startDir.getAbsolutePath().length() + 1);
     }
 
-    private PrintStream getOutput() throws FileNotFoundException {
+    /**
+     * @return the console, or the report file written as UTF-8 like the JSON
+     *         and XML reports
+     */
+    private PrintStream getOutput() throws IOException {
         if (this.outputFileName == null) {
             return System.out;
         }
-        return new PrintStream(this.outputFileName);
+        return new PrintStream(new FileOutputStream(this.outputFileName), false, StandardCharsets.UTF_8.name());
     }
 
     private ReportRenderer getReportRenderer() {
@@ -226,54 +1122,73 @@ public class StringFinder {
      * @param f
      *            - the file to check
      * @param deep
-     *            if true tries to open ZIPStream, if false uses common entries
+     *            if true checks the zip signature, if false uses common entries
      * @return
      */
-    private boolean isZipFile(final File f, final boolean deep) {
-        if (deep) {
-            return this.isZipFileDeep(f);
-        }
-        final String someName = f.getName();
+    boolean isZipFile(final File f, final boolean deep) {
+        final long start = System.nanoTime();
+        final boolean result = deep ? this.isZipFileDeep(f) : this.isZipName(f.getName());
+        this.metrics.stop(ScanMetrics.Phase.ZIP_DETECTION, start);
+        return result;
+    }
+
+    /**
+     * @param someName
+     *            a file or entry name
+     * @return true if the extension is one of the known zip formats
+     */
+    private boolean isZipName(final String someName) {
         final String extension = someName.substring(someName.lastIndexOf(".") + 1);
         return this.knownZips.contains(extension);
     }
 
     /**
-     * Tests a file for being a ZIP file by actually opening the file using a
-     * ZIPInputStream
+     * Tests a file for being a ZIP file by reading its first four bytes
      *
      * @param zipCandidate
      *            - the file we suspect to be a zip file
      * @return true/false if this is a zip file
      */
     private boolean isZipFileDeep(final File zipCandidate) {
-        boolean result = false;
-
-        FileInputStream in = null;
-        ZipInputStream zis = null;
-
-        try {
-            in = new FileInputStream(zipCandidate);
-            zis = new ZipInputStream(in);
-            @SuppressWarnings("unused")
-            final ZipEntry zipEntry = zis.getNextEntry();
-            // We got here, we have a ZIP file
+        try (final InputStream in = new FileInputStream(zipCandidate)) {
+            final byte[] magic = this.magicBuffer.get();
+            return StringFinder.isZipMagic(magic, ByteStreams.read(in, magic, 0, magic.length));
         } catch (final IOException e) {
-            result = false;
-        } finally {
-            try {
-                if (zis != null) {
-                    zis.close();
-                }
-                if (in != null) {
-                    in.close();
-                }
-            } catch (final IOException ex) {
-                // Not interested in this
-            }
+            return false;
         }
+    }
 
-        return result;
+    /**
+     * Tests a stream for zip content by its first four bytes, the bytes are
+     * pushed back, so the stream can be read from the start afterwards
+     *
+     * @param in
+     *            the stream, needs a pushback buffer of at least 4 bytes
+     * @return true/false if this is zip content
+     * @throws IOException
+     */
+    private boolean isZipStream(final PushbackInputStream in) throws IOException {
+        final byte[] magic = this.magicBuffer.get();
+        final int read = ByteStreams.read(in, magic, 0, magic.length);
+        if (read > 0) {
+            in.unread(magic, 0, read);
+        }
+        return StringFinder.isZipMagic(magic, read);
+    }
+
+    /**
+     * Checks for a local file header (PK\3\4) or the end of central
+     * directory record of an empty archive (PK\5\6)
+     *
+     * @param magic
+     *            the first bytes of the content
+     * @param length
+     *            how many bytes could be read
+     * @return true if the bytes are a zip signature
+     */
+    private static boolean isZipMagic(final byte[] magic, final int length) {
+        return length == StringFinder.ZIP_MAGIC_LENGTH && magic[0] == 'P' && magic[1] == 'K'
+                && ((magic[2] == 3 && magic[3] == 4) || (magic[2] == 5 && magic[3] == 6));
     }
 
     private File newFile(final File destinationDir, final ZipEntry zipEntry) throws IOException {
@@ -291,11 +1206,11 @@ public class StringFinder {
 
     private void populateKeys() throws FileNotFoundException {
         final File keyFile = new File(this.stringFileName);
-        final Scanner c = new Scanner(keyFile);
+        final Scanner c = new Scanner(keyFile, StandardCharsets.UTF_8.name());
         while (c.hasNextLine()) {
             final String curLine = c.nextLine().trim();
             if (!curLine.equals("") && !curLine.startsWith("#")) {
-                this.keys.put(curLine.toLowerCase(), curLine);
+                this.keys.put(KeyMatcher.fold(curLine), curLine);
             }
         }
         c.close();
@@ -310,29 +1225,33 @@ public class StringFinder {
                 this.options);
     }
 
-    private void processEntry(final File d, final boolean extract, final boolean deep) throws IOException {
-        if (d.isDirectory()) {
-            final File[] children = d.listFiles();
-            for (final File f : children) {
-                this.processEntry(f, extract, deep);
-            }
-        } else if (this.isZipFile(d, deep)) {
-            if (extract) {
-                final String zipName = d.getAbsolutePath();
-                final String newDirName = zipName.substring(0, zipName.lastIndexOf("."));
-                final File newTarget = new File(newDirName);
-                if (this.expandFile(d, newTarget)) {
-                    final File[] children = newTarget.listFiles();
-                    for (final File f : children) {
-                        this.processEntry(f, extract, deep);
+    /**
+     * Walks the tree with a work list of directories instead of recursion,
+     * deep trees can't overflow the stack
+     *
+     * @param root
+     *            where the walk starts
+     * @throws IOException
+     */
+    private void scanTree(final TreeDir root) throws IOException {
+        final Deque<TreeDir> dirs = new ArrayDeque<>();
+        final List<File> files = new ArrayList<>();
+        dirs.add(root);
+        while (!dirs.isEmpty()) {
+            files.clear();
+            dirs.poll().list(dirs, files);
+            for (final File f : files) {
+                if (this.isZipFile(f, this.deepScan)) {
+                    final File newTarget = this.processArchive(f, this.extractFiles);
+                    if (newTarget != null) {
+                        dirs.add(TreeDir.expanded(newTarget));
                     }
+                } else {
+                    // Scanning a file
+                    this.findKeyInFile(f);
                 }
             }
-        } else {
-            // Scanning a file
-            this.findKeyInFile(d);
         }
-
     }
 
     private void setReportFormat(final String optionValue) {
@@ -344,6 +1263,9 @@ public class StringFinder {
             case "json":
                 this.reportType = ReportType.JSON;
                 break;
+            case "ndjson":
+                this.reportType = ReportType.NDJSON;
+                break;
 
             default:
                 this.reportType = ReportType.MARKDOWN;
@@ -368,7 +1290,7 @@ public class StringFinder {
                 .build());
 
         this.options.addOption(Option.builder(StringFinder.REPORTFORMAT).longOpt(StringFinder.REPORTFORMAT_LONGNAME)
-                .desc("Format for the Report: markdown, xml, json")
+                .desc("Format for the Report: markdown, xml, json, ndjson (one line per hit, written while scanning)")
                 .hasArg()
                 .build());
 
@@ -376,8 +1298,90 @@ public class StringFinder {
                 .desc("Rerun find operation on a ready unzipped structure - good for alternate finds")
                 .build());
 
+        this.options.addOption(Option.builder(StringFinder.NOEXTRACT).longOpt(StringFinder.NOEXTRACT_LONGNAME)
+                .desc("Scan ZIP content in memory without extracting it to disk")
+                .build());
+
         this.options.addOption(Option.builder(StringFinder.DEEPSCAN).longOpt(StringFinder.DEEPSCAN_LONGNAME)
-                .desc("Test every file for Zipped content (catches office formats too) - Warning SLOW!!!")
+                .desc("Test every file for Zipped content by its signature (catches office formats too)")
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.CACHE).longOpt(StringFinder.CACHE_LONGNAME)
+                .desc("Scan cache file, unchanged files reuse their hits from the previous run")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.CACHEHASH).longOpt(StringFinder.CACHEHASH_LONGNAME)
+                .desc("Compare content hashes too before reusing cached hits")
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.METRICS).longOpt(StringFinder.METRICS_LONGNAME)
+                .desc("Write scan metrics as JSON next to the report (<output>.metrics.json)")
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.THREADS).longOpt(StringFinder.THREADS_LONGNAME)
+                .desc("Number of threads to scan directories and files in parallel (default 1)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.MAPTHRESHOLD).longOpt(StringFinder.MAPTHRESHOLD_LONGNAME)
+                .desc("Files larger than this size in MB are memory mapped instead of read (default 16)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.COMPILE).longOpt(StringFinder.COMPILE_LONGNAME)
+                .desc("Compile the string file into this binary file and exit, use it as string file in later runs")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.BINARY).longOpt(StringFinder.BINARY_LONGNAME)
+                .desc("Detect binary files by extension and content and skip them (skip) or match only ASCII keys "
+                        + "without decoding (raw)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.BINARYDENY).longOpt(StringFinder.BINARYDENY_LONGNAME)
+                .desc("Comma separated extensions always treated as binary (default class,jar,png,pdf,... )")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.BINARYALLOW).longOpt(StringFinder.BINARYALLOW_LONGNAME)
+                .desc("Comma separated extensions always treated as text")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.VIRTUAL).longOpt(StringFinder.VIRTUAL_LONGNAME)
+                .desc("Read files on virtual threads (Java 21+) with up to this many files in flight, matching "
+                        + "runs on --threads workers (default one per core)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.PIPELINE).longOpt(StringFinder.PIPELINE_LONGNAME)
+                .desc("Scan in stages connected by bounded queues, comma separated worker counts for walk, detect, "
+                        + "extract and match (default 1,1,cores/2,cores)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.MAXDEPTH).longOpt(StringFinder.MAXDEPTH_LONGNAME)
+                .desc("Descend at most this many directory levels, 1 scans only the files in the start directory "
+                        + "(default unlimited)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.NESTING).longOpt(StringFinder.NESTING_LONGNAME)
+                .desc("Open archives nested at most this many levels deep inside an archive, 0 opens none "
+                        + "(default 10)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.INFLATELIMIT).longOpt(StringFinder.INFLATELIMIT_LONGNAME)
+                .desc("Stop scanning or expanding an archive after inflating this many MB, nested archives "
+                        + "included (default unlimited)")
+                .hasArg()
+                .build());
+
+        this.options.addOption(Option.builder(StringFinder.PREFILTER).longOpt(StringFinder.PREFILTER_LONGNAME)
+                .desc("Skip content where no key can start using a rolling hash, for very large key sets")
                 .build());
     }
 
@@ -0,0 +1,178 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * A directory reached while walking the tree, with its depth below the
+ * start directory and the directories above it. Children are listed one
+ * level deep with Files.walkFileTree(), which hands over the attributes the
+ * directory read returned where the platform has them (Windows) and reads
+ * them once per child elsewhere. Files keep size and modification time, see
+ * {@link ListedFile}.
+ *
+ * Symbolic links are followed, a link back to one of the directories above
+ * would loop forever and is skipped with a warning
+ *
+ * @author swissel
+ *
+ */
+class TreeDir {
+
+    /** No depth limit */
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    /**
+     * @param dir
+     *            the start directory
+     * @param maxDepth
+     *            directory levels to descend, 1 lists only the start
+     *            directory itself
+     * @return the start of a walk
+     * @throws IOException
+     */
+    static TreeDir root(final File dir, final int maxDepth) throws IOException {
+        final Path path = dir.toPath();
+        return new TreeDir(path, TreeDir.fileKey(path, Files.readAttributes(path, BasicFileAttributes.class)), 0,
+                maxDepth, null);
+    }
+
+    /**
+     * Archive contents are not depth limited, the same as when they are
+     * scanned in memory
+     *
+     * @param dir
+     *            directory an archive was expanded into
+     * @return the start of a walk through the archive contents
+     * @throws IOException
+     */
+    static TreeDir expanded(final File dir) throws IOException {
+        return TreeDir.root(dir, TreeDir.UNLIMITED);
+    }
+
+    private static Object fileKey(final Path path, final BasicFileAttributes attributes) throws IOException {
+        // Not every file system has keys, the real path identifies a directory too
+        final Object key = attributes.fileKey();
+        return (key == null) ? path.toRealPath() : key;
+    }
+
+    private final Path    path;
+    private final Object  fileKey;
+    private final int     depth;
+    private final int     maxDepth;
+    private final TreeDir parent;
+
+    /**
+     * @param path
+     *            the directory
+     * @param fileKey
+     *            identifies the directory independent of the path it was
+     *            reached by
+     * @param depth
+     *            levels below the start directory
+     * @param maxDepth
+     *            levels to descend at most
+     * @param parent
+     *            the directory above or null for the start directory
+     */
+    TreeDir(final Path path, final Object fileKey, final int depth, final int maxDepth, final TreeDir parent) {
+        this.path = path;
+        this.fileKey = fileKey;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+        this.parent = parent;
+    }
+
+    /**
+     * Lists the directory. Directories and children that can't be read are
+     * skipped with a warning, so are directories beyond the maximum depth
+     *
+     * @param dirs
+     *            receives the subdirectories
+     * @param files
+     *            receives everything else
+     */
+    void list(final Collection<TreeDir> dirs, final Collection<File> files) {
+        try {
+            // At the maximum depth of 1 every child, directories too, is a visitFile
+            Files.walkFileTree(this.path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(final Path child, final BasicFileAttributes attributes) {
+                    // Links are followed, a link left over has a target that can't be read
+                    if (attributes.isSymbolicLink()) {
+                        System.err.println("Skipping broken symbolic link " + child);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        TreeDir.this.add(child, attributes, dirs, files);
+                    } catch (final IOException e) {
+                        System.err.println("Skipping " + child + ": " + e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path child, final IOException e) {
+                    System.err.println("Skipping " + child + ": " + e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            System.err.println("Skipping " + this.path + ": " + e);
+        }
+    }
+
+    private void add(final Path child, final BasicFileAttributes attributes, final Collection<TreeDir> dirs,
+            final Collection<File> files) throws IOException {
+        if (!attributes.isDirectory()) {
+            files.add(new ListedFile(child, attributes));
+        } else if (this.depth + 1 < this.maxDepth) {
+            final Object key = TreeDir.fileKey(child, attributes);
+            if (this.isLoop(key)) {
+                System.err.println("Skipping symbolic link loop " + child);
+            } else {
+                dirs.add(new TreeDir(child, key, this.depth + 1, this.maxDepth, this));
+            }
+        }
+    }
+
+    private boolean isLoop(final Object key) {
+        for (TreeDir d = this; d != null; d = d.parent) {
+            if (key.equals(d.fileKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,262 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scans a tree with one virtual thread per directory listing, archive and
+ * file read, so thousands of reads can wait on slow (network) storage
+ * without as many OS threads. Content read into memory is matched on a
+ * bounded pool of platform threads, a semaphore limits the files in flight.
+ * Only small files are read ahead, within a byte budget for read but not yet
+ * matched content. Larger files and archives are streamed by the matchers,
+ * so memory doesn't grow with the files in flight.
+ *
+ * Virtual threads need Java 21, the build targets Java 8, so the executor
+ * is looked up by reflection. Older runtimes fall back to a fixed pool of
+ * platform threads for the reads
+ *
+ * @author swissel
+ *
+ */
+class VirtualScanner {
+
+    /** Read threads when virtual threads are not available */
+    private static final int FALLBACK_READERS = 64;
+    /** Larger files are matched from disk by a matcher thread */
+    private static final long READ_LIMIT = 1024L * 1024;
+    /** Read ahead content waiting for a matcher, in KB */
+    private static final int READ_BUDGET_KB = 64 * 1024;
+
+    private final StringFinder finder;
+    private final boolean      extract;
+    private final boolean      deep;
+
+    private final ExecutorService            readers;
+    private final ForkJoinPool               matchers;
+    private final Semaphore                  inFlight;
+    private final Semaphore                  readBudget = new Semaphore(VirtualScanner.READ_BUDGET_KB);
+    private final AtomicLong                 pending = new AtomicLong();
+    private final CountDownLatch             done    = new CountDownLatch(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param finder
+     *            the StringFinder doing the actual work
+     * @param extract
+     *            expand archives
+     * @param deep
+     *            test every file for zip content
+     * @param matcherThreads
+     *            size of the matcher pool, archives are scanned on it too
+     * @param maxInFlight
+     *            files read or waiting to be matched at the same time
+     */
+    VirtualScanner(final StringFinder finder, final boolean extract, final boolean deep, final int matcherThreads,
+            final int maxInFlight) {
+        this.finder = finder;
+        this.extract = extract;
+        this.deep = deep;
+        this.readers = VirtualScanner.newReaders();
+        // A fork join pool, so a parallel archive scan splits onto the matchers
+        this.matchers = new ForkJoinPool(matcherThreads);
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * @return true if the runtime can create virtual threads, not only knows
+     *         the method
+     */
+    static boolean isAvailable() {
+        final ExecutorService probe = VirtualScanner.newVirtualReaders();
+        if (probe == null) {
+            return false;
+        }
+        probe.shutdown();
+        return true;
+    }
+
+    private static ExecutorService newReaders() {
+        final ExecutorService virtual = VirtualScanner.newVirtualReaders();
+        return (virtual == null) ? Executors.newFixedThreadPool(VirtualScanner.FALLBACK_READERS) : virtual;
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task, null if the
+     *         runtime has none
+     */
+    private static ExecutorService newVirtualReaders() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (final ReflectiveOperationException | UnsupportedOperationException e) {
+            // Java 19/20 have the method, but only with preview features on
+            return null;
+        }
+    }
+
+    /**
+     * Scans all children of a directory and waits for the scan to finish
+     *
+     * @param startDir
+     *            the directory to scan
+     * @throws IOException
+     *             the first failure of any read or match
+     */
+    void scan(final TreeDir startDir) throws IOException {
+        this.pending.incrementAndGet();
+        try {
+            this.submitChildren(startDir);
+        } finally {
+            this.finished();
+        }
+        try {
+            this.done.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Scan interrupted", e);
+        } finally {
+            this.readers.shutdownNow();
+            this.matchers.shutdownNow();
+        }
+        final Throwable t = this.failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+    private void submitChildren(final TreeDir dir) {
+        final List<TreeDir> dirs = new ArrayList<>();
+        final List<File> files = new ArrayList<>();
+        dir.list(dirs, files);
+        for (final TreeDir d : dirs) {
+            this.submit(this.readers, () -> this.submitChildren(d));
+        }
+        for (final File f : files) {
+            this.submit(this.readers, () -> this.process(f));
+        }
+    }
+
+    private void process(final File entry) throws Exception {
+        if (this.finder.isZipFile(entry, this.deep)) {
+            // Inflating needs a core, not a reader
+            this.submit(this.matchers, () -> {
+                final File newTarget = this.finder.processArchive(entry, this.extract);
+                if (newTarget != null) {
+                    this.submit(this.readers, () -> this.submitChildren(TreeDir.expanded(newTarget)));
+                }
+            });
+        } else if (!this.finder.replayFromCache(entry)) {
+            this.read(entry);
+        }
+    }
+
+    /**
+     * Reads a small file on the calling (virtual) thread and hands the
+     * content to the matchers, a larger one is left to the matcher to
+     * stream. The permits are returned once the file is matched
+     */
+    private void read(final File f) throws InterruptedException, IOException {
+        this.inFlight.acquire();
+        final long length = f.length();
+        final int budget = (length > VirtualScanner.READ_LIMIT) ? 0 : (int) ((length + 1023) / 1024);
+        boolean handedOver = false;
+        try {
+            this.readBudget.acquire(budget);
+            try {
+                final byte[] content = (length > VirtualScanner.READ_LIMIT) ? null : Files.readAllBytes(f.toPath());
+                this.submit(this.matchers, () -> this.finder.matchFile(f, content), () -> {
+                    this.readBudget.release(budget);
+                    this.inFlight.release();
+                });
+                handedOver = true;
+            } finally {
+                if (!handedOver) {
+                    this.readBudget.release(budget);
+                }
+            }
+        } finally {
+            if (!handedOver) {
+                this.inFlight.release();
+            }
+        }
+    }
+
+    private void submit(final ExecutorService executor, final Task task) {
+        this.submit(executor, task, null);
+    }
+
+    /**
+     * Runs a task, the scan is finished when no task is pending anymore.
+     * After a failure tasks are skipped, their release still runs, so readers
+     * waiting for permits get them
+     */
+    private void submit(final ExecutorService executor, final Task task, final Runnable release) {
+        this.pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                if (this.failure.get() == null) {
+                    task.run();
+                }
+            } catch (final Throwable t) {
+                this.failure.compareAndSet(null, t);
+            } finally {
+                if (release != null) {
+                    release.run();
+                }
+                this.finished();
+            }
+        });
+    }
+
+    private void finished() {
+        if (this.pending.decrementAndGet() == 0) {
+            this.done.countDown();
+        }
+    }
+
+    /**
+     * A step of the scan
+     */
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+}
@@ -0,0 +1,161 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Flight Recorder events, only loaded by {@link ScanEvents} when JFR is
+ * available. Needs jdk.jfr to compile, see the jfr profile in the pom
+ *
+ * @author swissel
+ *
+ */
+final class JfrEvents implements ScanEvents.Recorder {
+
+    @Name("net.wissel.tool.findStrings.FileScanned")
+    @Label("File Scanned")
+    @Category("findStrings")
+    @Description("One file or archive entry run through the key matcher")
+    static final class FileScanned extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Hits")
+        int hits;
+    }
+
+    @Name("net.wissel.tool.findStrings.ArchiveExpanded")
+    @Label("Archive Expanded")
+    @Category("findStrings")
+    @Description("One archive extracted to disk or scanned in memory")
+    static final class ArchiveExpanded extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Entries")
+        long entries;
+
+        @Label("Inflated")
+        @DataAmount
+        long inflatedBytes;
+
+        @Label("In Memory")
+        boolean inMemory;
+
+        @Label("Complete")
+        @Description("False when the inflate limit or an error stopped the archive early")
+        boolean complete;
+    }
+
+    @Name("net.wissel.tool.findStrings.RenderCompleted")
+    @Label("Render Completed")
+    @Category("findStrings")
+    @Description("The report was written")
+    static final class RenderCompleted extends Event {
+        @Label("Format")
+        String format;
+
+        @Label("Keys Found")
+        long keysFound;
+
+        @Label("Hits")
+        long hits;
+    }
+
+    @Override
+    public Object beginFileScan() {
+        final FileScanned event = new FileScanned();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFileScan(final Object handle, final String path, final long size, final int hits) {
+        final FileScanned event = (FileScanned) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.size = size;
+            event.hits = hits;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginArchive() {
+        final ArchiveExpanded event = new ArchiveExpanded();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endArchive(final Object handle, final String path, final long entries, final long inflatedBytes,
+            final boolean inMemory, final boolean complete) {
+        final ArchiveExpanded event = (ArchiveExpanded) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.entries = entries;
+            event.inflatedBytes = inflatedBytes;
+            event.inMemory = inMemory;
+            event.complete = complete;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginRender() {
+        final RenderCompleted event = new RenderCompleted();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endRender(final Object handle, final String format, final long keysFound, final long hits) {
+        final RenderCompleted event = (RenderCompleted) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.format = format;
+            event.keysFound = keysFound;
+            event.hits = hits;
+            event.commit();
+        }
+    }
+
+    /**
+     * Created by {@link ScanEvents} through reflection
+     */
+    JfrEvents() {
+        // No state, the events carry everything
+    }
+
+}
@@ -0,0 +1,86 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Checks the decisions of the BinaryFilter by name and by content
+ *
+ * @author swissel
+ *
+ */
+public class BinaryFilterTest {
+
+    private static BinaryFilter.Action byContent(final BinaryFilter filter, final byte[] data) {
+        return filter.byContent(data, 0, data.length);
+    }
+
+    @Test
+    public void nulMakesContentBinary() {
+        final byte[] text = "plain text\twith\r\nline breaks äöü".getBytes(StandardCharsets.UTF_8);
+        final byte[] nul = { 'a', 'b', 0, 'c' };
+        final BinaryFilter skip = new BinaryFilter(false, BinaryFilter.DEFAULT_DENY, Collections.emptyList());
+        final BinaryFilter raw = new BinaryFilter(true, BinaryFilter.DEFAULT_DENY, Collections.emptyList());
+        assertEquals(BinaryFilter.Action.SCAN, BinaryFilterTest.byContent(skip, text));
+        assertEquals(BinaryFilter.Action.SKIP, BinaryFilterTest.byContent(skip, nul));
+        assertEquals(BinaryFilter.Action.RAW, BinaryFilterTest.byContent(raw, nul));
+    }
+
+    @Test
+    public void controlCharactersAboveTenPercentMakeContentBinary() {
+        final BinaryFilter filter = new BinaryFilter(false, BinaryFilter.DEFAULT_DENY, Collections.emptyList());
+        final byte[] data = new byte[100];
+        Arrays.fill(data, (byte) 'x');
+        Arrays.fill(data, 0, 10, (byte) 1);
+        assertEquals(BinaryFilter.Action.SCAN, BinaryFilterTest.byContent(filter, data));
+        data[10] = 0x7F;
+        assertEquals(BinaryFilter.Action.SKIP, BinaryFilterTest.byContent(filter, data));
+        // Only the sample counts
+        final byte[] late = new byte[BinaryFilter.SAMPLE_SIZE + 1];
+        Arrays.fill(late, (byte) 'x');
+        late[BinaryFilter.SAMPLE_SIZE] = 0;
+        assertEquals(BinaryFilter.Action.SCAN, BinaryFilterTest.byContent(filter, late));
+    }
+
+    @Test
+    public void extensionsDecideByName() {
+        final BinaryFilter filter = new BinaryFilter(true, Arrays.asList("PNG", ".dat", " "),
+                Arrays.asList("dat", "txt"));
+        assertEquals(BinaryFilter.Action.RAW, filter.byName("logo.png"));
+        assertEquals(BinaryFilter.Action.RAW, filter.byName("dir/LOGO.Png"));
+        // Allow wins over deny
+        assertEquals(BinaryFilter.Action.SCAN, filter.byName("table.dat"));
+        assertEquals(BinaryFilter.Action.SCAN, filter.byName("notes.txt"));
+        assertNull(filter.byName("notes.md"));
+        assertNull(filter.byName("Makefile"));
+        assertNull(filter.byName("images.png/readme"));
+    }
+
+}
@@ -0,0 +1,202 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compile -> load round trips of key files
+ *
+ * @author swissel
+ *
+ */
+public class CompiledKeysTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File compile(final Map<String, String> keys) throws IOException {
+        final File f = this.folder.newFile("keys.fsk");
+        CompiledKeys.write(f, keys, new KeyMatcher(keys.keySet()));
+        return f;
+    }
+
+    @Test
+    public void roundTripKeepsKeysAndMatches() throws IOException {
+        final Random random = new Random(4);
+        final Map<String, String> keys = new LinkedHashMap<>();
+        for (final String k : KeyMatcherTest.randomKeys(random, "abcAB äöÄÖé€", 40)) {
+            keys.put(k, k.toUpperCase());
+        }
+        final File f = this.compile(keys);
+        assertTrue(CompiledKeys.isCompiled(f));
+
+        for (final boolean usePrefilter : new boolean[] { false, true }) {
+            final Map<String, String> loadedKeys = new LinkedHashMap<>();
+            final KeyMatcher loaded = CompiledKeys.read(f, loadedKeys, usePrefilter);
+            assertEquals(keys, loadedKeys);
+            final List<String> keyList = new ArrayList<>(keys.keySet());
+            for (int round = 0; round < 100; round++) {
+                final String content = KeyMatcherTest.randomContent(random, "abcAB äöÄÖé€", keyList);
+                final byte[] data = content.getBytes(StandardCharsets.UTF_8);
+                assertEquals(KeyMatcherTest.naive(content, keyList), loaded.findIn(data, 0, data.length));
+            }
+        }
+    }
+
+    @Test
+    public void asciiRoundTripWithPrefilter() throws IOException {
+        final Map<String, String> keys = new LinkedHashMap<>();
+        for (final String k : Arrays.asList("select", "foo.bar", "hello")) {
+            keys.put(k, k);
+        }
+        final KeyMatcher loaded = CompiledKeys.read(this.compile(keys), new LinkedHashMap<>(), true);
+        assertTrue(loaded.hasPrefilter());
+        final byte[] data = "SELECT * from foo.bar".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new HashSet<>(Arrays.asList("select", "foo.bar")), loaded.findIn(data, 0, data.length));
+    }
+
+    @Test
+    public void plainKeyFileIsNotCompiled() throws IOException {
+        final File f = this.folder.newFile("keys.txt");
+        Files.write(f.toPath(), "hello\nworld\n".getBytes(StandardCharsets.UTF_8));
+        assertFalse(CompiledKeys.isCompiled(f));
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws IOException {
+        final Map<String, String> keys = new LinkedHashMap<>();
+        keys.put("hello", "Hello");
+        keys.put("wörld", "Wörld");
+        final File f = this.compile(keys);
+        try (final RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        try {
+            CompiledKeys.read(f, new LinkedHashMap<>(), false);
+            fail("Truncated file was read");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * @param array
+     *            0 rootNext, 1 edgeKeys, 2 edgeTargets, 3 fail, 4 patternAt, 5
+     *            outLink
+     * @return the position of the length of the array in a written automaton
+     */
+    private static int offset(final ByteBuffer written, final int array) {
+        int pos = 0;
+        for (int a = 0; a < array; a++) {
+            pos += Integer.BYTES + written.getInt(pos) * ((a == 1) ? Long.BYTES : Integer.BYTES);
+        }
+        return pos;
+    }
+
+    private static int length(final ByteBuffer written, final int array) {
+        return written.getInt(CompiledKeysTest.offset(written, array));
+    }
+
+    private static void set(final ByteBuffer written, final int array, final int index, final long value) {
+        final int pos = CompiledKeysTest.offset(written, array) + Integer.BYTES;
+        if (array == 1) {
+            written.putLong(pos + index * Long.BYTES, value);
+        } else {
+            written.putInt(pos + index * Integer.BYTES, (int) value);
+        }
+    }
+
+    @Test
+    public void corruptAutomatonIsRejectedOnLoad() throws IOException {
+        // States: 1 a, 2 ab, 3 b, 4 ba
+        final AhoCorasick automaton = new AhoCorasick(Arrays.asList(new int[] { 'a', 'b' }, new int[] { 'b', 'a' }),
+                256);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        automaton.write(new DataOutputStream(bytes));
+        final byte[] written = bytes.toByteArray();
+        final int states = CompiledKeysTest.length(ByteBuffer.wrap(written), 3);
+        assertEquals(5, states);
+        AhoCorasick.read(ByteBuffer.wrap(written));
+
+        final List<long[]> corruptions = new ArrayList<>();
+        corruptions.add(new long[] { 0, 'a', states });
+        corruptions.add(new long[] { 0, 'b', -1 });
+        corruptions.add(new long[] { 2, 0, -2 });
+        corruptions.add(new long[] { 3, 1, states });
+        corruptions.add(new long[] { 3, 1, -1 });
+        corruptions.add(new long[] { 4, 2, states });
+        corruptions.add(new long[] { 5, 1, -2 });
+        // Cycles of failure and output links
+        corruptions.add(new long[] { 3, 1, 2, 3, 2, 1 });
+        corruptions.add(new long[] { 5, 1, 2, 5, 2, 1 });
+        corruptions.add(new long[] { 5, 4, 4 });
+        for (final long[] corruption : corruptions) {
+            final ByteBuffer changed = ByteBuffer.wrap(written.clone());
+            for (int i = 0; i < corruption.length; i += 3) {
+                CompiledKeysTest.set(changed, (int) corruption[i], (int) corruption[i + 1], corruption[i + 2]);
+            }
+            try {
+                AhoCorasick.read(changed);
+                fail("Read with " + Arrays.toString(corruption));
+            } catch (final IOException e) {
+                assertEquals("Corrupt automaton", e.getMessage());
+            }
+        }
+
+        // A full edge table leaves lookups of missing edges without an end
+        final ByteBuffer full = ByteBuffer.wrap(written.clone());
+        for (int i = 0; i < CompiledKeysTest.length(full, 1); i++) {
+            CompiledKeysTest.set(full, 1, i, 0);
+        }
+        try {
+            AhoCorasick.read(full);
+            fail("Read without a free edge slot");
+        } catch (final IOException e) {
+            assertEquals("Corrupt automaton", e.getMessage());
+        }
+    }
+
+}
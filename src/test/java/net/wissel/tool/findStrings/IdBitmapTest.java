@@ -0,0 +1,126 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the IdBitmap with a BitSet on sparse and dense random sets, so
+ * array and bitmap containers and the switch between them are covered
+ *
+ * @author swissel
+ *
+ */
+public class IdBitmapTest {
+
+    private static final int ROUNDS = 50;
+
+    /**
+     * Random ids in a few containers, some of them dense enough for a bitmap
+     */
+    private static void fill(final Random random, final IdBitmap bitmap, final BitSet expected) {
+        final int containers = 1 + random.nextInt(4);
+        for (int c = 0; c < containers; c++) {
+            final int high = random.nextInt(8) << 16;
+            final int count = random.nextBoolean() ? random.nextInt(100) : random.nextInt(3 * IdBitmap.ARRAY_LIMIT);
+            final int range = random.nextBoolean() ? 65536 : 2 * IdBitmap.ARRAY_LIMIT;
+            for (int i = 0; i < count; i++) {
+                final int id = high | random.nextInt(range);
+                bitmap.add(id);
+                expected.set(id);
+            }
+        }
+    }
+
+    private static int[] toArray(final BitSet bits) {
+        return bits.stream().toArray();
+    }
+
+    private static void assertSame(final BitSet expected, final IdBitmap actual) {
+        assertArrayEquals(IdBitmapTest.toArray(expected), actual.toArray());
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+    }
+
+    @Test
+    public void addMatchesBitSet() {
+        final Random random = new Random(1);
+        for (int round = 0; round < IdBitmapTest.ROUNDS; round++) {
+            final IdBitmap bitmap = new IdBitmap();
+            final BitSet expected = new BitSet();
+            IdBitmapTest.fill(random, bitmap, expected);
+            IdBitmapTest.assertSame(expected, bitmap);
+            for (int i = 0; i < 1000; i++) {
+                final int id = random.nextInt(8 << 16);
+                assertEquals(expected.get(id), bitmap.contains(id));
+            }
+        }
+    }
+
+    @Test
+    public void orAndMatchBitSet() {
+        final Random random = new Random(2);
+        for (int round = 0; round < IdBitmapTest.ROUNDS; round++) {
+            final IdBitmap a = new IdBitmap();
+            final BitSet expectedA = new BitSet();
+            IdBitmapTest.fill(random, a, expectedA);
+            final IdBitmap b = new IdBitmap();
+            final BitSet expectedB = new BitSet();
+            IdBitmapTest.fill(random, b, expectedB);
+
+            final BitSet and = (BitSet) expectedA.clone();
+            and.and(expectedB);
+            IdBitmapTest.assertSame(and, a.and(b));
+            IdBitmapTest.assertSame(and, b.and(a));
+
+            final BitSet or = (BitSet) expectedA.clone();
+            or.or(expectedB);
+            a.or(b);
+            IdBitmapTest.assertSame(or, a);
+            IdBitmapTest.assertSame(expectedB, b);
+        }
+    }
+
+    @Test
+    public void emptySets() {
+        final IdBitmap empty = new IdBitmap();
+        assertTrue(empty.isEmpty());
+        assertEquals(0, empty.toArray().length);
+        final IdBitmap one = new IdBitmap();
+        one.add(Integer.MAX_VALUE);
+        assertFalse(one.isEmpty());
+        assertTrue(one.and(empty).isEmpty());
+        one.or(empty);
+        assertArrayEquals(new int[] { Integer.MAX_VALUE }, one.toArray());
+        empty.or(one);
+        assertTrue(empty.contains(Integer.MAX_VALUE));
+    }
+
+}
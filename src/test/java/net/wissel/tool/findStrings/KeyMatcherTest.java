@@ -0,0 +1,215 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Compares the KeyMatcher against a naive indexOf search on random keys and
+ * content, whole and fed in chunks, with and without prefilter
+ *
+ * @author swissel
+ *
+ */
+public class KeyMatcherTest {
+
+    private static final String ASCII_LETTERS = "abcdAB ._-";
+    private static final String MIXED_LETTERS = "abcAB äöÄÖé€ΣσςİıI";
+    private static final int    ROUNDS        = 200;
+
+    /**
+     * The naive oracle: fold the whole content and look for every key
+     */
+    static Set<String> naive(final String content, final Collection<String> keys) {
+        final String lower = KeyMatcher.fold(content);
+        final Set<String> result = new HashSet<>();
+        for (final String k : keys) {
+            if (lower.indexOf(k) >= 0) {
+                result.add(k);
+            }
+        }
+        return result;
+    }
+
+    static Set<String> randomKeys(final Random random, final String letters, final int count) {
+        final Set<String> keys = new LinkedHashSet<>();
+        while (keys.size() < count) {
+            keys.add(KeyMatcher.fold(KeyMatcherTest.randomText(random, letters, 1 + random.nextInt(6))));
+        }
+        return keys;
+    }
+
+    /**
+     * Random text with some of the keys planted in upper or lower case
+     */
+    static String randomContent(final Random random, final String letters, final List<String> keys) {
+        final StringBuilder b = new StringBuilder();
+        final int parts = random.nextInt(20);
+        for (int i = 0; i < parts; i++) {
+            b.append(KeyMatcherTest.randomText(random, letters, random.nextInt(40)));
+            if (!keys.isEmpty() && random.nextBoolean()) {
+                final String key = keys.get(random.nextInt(keys.size()));
+                b.append(random.nextBoolean() ? key.toUpperCase(Locale.ROOT) : key);
+            }
+        }
+        return b.toString();
+    }
+
+    private static String randomText(final Random random, final String letters, final int length) {
+        final StringBuilder b = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            b.append(letters.charAt(random.nextInt(letters.length())));
+        }
+        return b.toString();
+    }
+
+    private static Set<String> chunked(final KeyMatcher matcher, final byte[] data, final Random random) {
+        final KeyMatcher.Scan scan = matcher.newScan();
+        int pos = 0;
+        while (pos < data.length) {
+            final int length = Math.min(data.length - pos, 1 + random.nextInt(7));
+            scan.feed(data, pos, length);
+            pos += length;
+        }
+        return scan.getKeys();
+    }
+
+    private void compareWithNaive(final String letters, final int keyCount, final boolean usePrefilter,
+            final long seed) throws IOException {
+        final Random random = new Random(seed);
+        for (int round = 0; round < KeyMatcherTest.ROUNDS; round++) {
+            final List<String> keys = new ArrayList<>(KeyMatcherTest.randomKeys(random, letters, keyCount));
+            final KeyMatcher matcher = new KeyMatcher(keys, usePrefilter);
+            final String content = KeyMatcherTest.randomContent(random, letters, keys);
+            final byte[] data = content.getBytes(StandardCharsets.UTF_8);
+            final Set<String> expected = KeyMatcherTest.naive(content, keys);
+            final String message = "keys " + keys + " in \"" + content + "\"";
+            assertEquals(message, expected, matcher.findIn(data, 0, data.length));
+            assertEquals(message, expected, KeyMatcherTest.chunked(matcher, data, random));
+            assertEquals(message, expected, matcher.findIn(new ByteArrayInputStream(data), new byte[3]));
+        }
+    }
+
+    @Test
+    public void asciiKeysMatchNaiveSearch() throws IOException {
+        this.compareWithNaive(KeyMatcherTest.ASCII_LETTERS, 10, false, 1);
+    }
+
+    @Test
+    public void mixedKeysMatchNaiveSearch() throws IOException {
+        this.compareWithNaive(KeyMatcherTest.MIXED_LETTERS, 10, false, 2);
+    }
+
+    @Test
+    public void prefilterMatchesNaiveSearch() throws IOException {
+        this.compareWithNaive(KeyMatcherTest.ASCII_LETTERS, 50, true, 3);
+    }
+
+    @Test
+    public void prefilterOnlyForAsciiKeys() {
+        assertTrue(new KeyMatcher(Arrays.asList("abc", "de"), true).hasPrefilter());
+        assertFalse(new KeyMatcher(Arrays.asList("abc", "dä"), true).hasPrefilter());
+        assertFalse(new KeyMatcher(Arrays.asList("abc", "de"), false).hasPrefilter());
+    }
+
+    @Test
+    public void keyAcrossChunkBoundary() {
+        final KeyMatcher matcher = new KeyMatcher(Arrays.asList("hello", "äöü"));
+        final byte[] data = "xxHELLOxx ÄÖÜ".getBytes(StandardCharsets.UTF_8);
+        // Split inside the key and inside a multi byte character
+        for (int split = 0; split <= data.length; split++) {
+            final KeyMatcher.Scan scan = matcher.newScan();
+            scan.feed(data, 0, split);
+            scan.feed(ByteBuffer.wrap(data, split, data.length - split));
+            assertEquals("split at " + split, new HashSet<>(Arrays.asList("hello", "äöü")), scan.getKeys());
+        }
+    }
+
+    @Test
+    public void prefilterFindsKeyAtEndOfContent() {
+        final KeyMatcher matcher = new KeyMatcher(Arrays.asList("abcdefghij", "xyz"), true);
+        assertTrue(matcher.hasPrefilter());
+        final byte[] data = "..abcdefghij xyz".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new HashSet<>(Arrays.asList("abcdefghij", "xyz")), matcher.findIn(data, 0, data.length));
+        final byte[] shorter = "xyz".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Collections.singleton("xyz"), matcher.findIn(shorter, 0, shorter.length));
+    }
+
+    @Test
+    public void rawScanFindsOnlyAsciiKeys() {
+        final KeyMatcher matcher = new KeyMatcher(Arrays.asList("abc", "äöü"));
+        final byte[] data = "ABC äöü".getBytes(StandardCharsets.UTF_8);
+        final KeyMatcher.Scan scan = matcher.newRawScan();
+        scan.feed(data, 0, data.length);
+        assertEquals(Collections.singleton("abc"), scan.getKeys());
+    }
+
+    @Test
+    public void invalidUtf8DoesNotHideKeys() {
+        final KeyMatcher matcher = new KeyMatcher(Arrays.asList("abc", "äb"));
+        final byte[] data = { (byte) 0xC3, 'a', 'b', 'c', (byte) 0xFF, (byte) 0xC3, (byte) 0xA4, 'B', (byte) 0x80 };
+        assertEquals(new HashSet<>(Arrays.asList("abc", "äb")), matcher.findIn(data, 0, data.length));
+    }
+
+    @Test
+    public void keysFoldLikeTheContent() {
+        final List<String> keys = Arrays.asList(KeyMatcher.fold("İstanbul"), KeyMatcher.fold("ΟΔΟΣ"),
+                KeyMatcher.fold("Straße"));
+        final KeyMatcher matcher = new KeyMatcher(keys);
+        for (final String text : Arrays.asList("İstanbul ΟΔΟΣ Straße", "istanbul οδος STRASSE straße",
+                "ISTANBUL Οδός οδοσ")) {
+            final byte[] data = text.getBytes(StandardCharsets.UTF_8);
+            final Set<String> expected = KeyMatcherTest.naive(text, keys);
+            assertEquals(text, expected, matcher.findIn(data, 0, data.length));
+            assertEquals(text, expected, KeyMatcherTest.chunked(matcher, data, new Random(text.length())));
+        }
+        final byte[] verbatim = "İstanbul ΟΔΟΣ Straße".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new HashSet<>(keys), matcher.findIn(verbatim, 0, verbatim.length));
+    }
+
+    @Test
+    public void emptyKeysAreIgnored() {
+        final KeyMatcher matcher = new KeyMatcher(Arrays.asList("", "a"));
+        final byte[] data = "bab".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Collections.singleton("a"), matcher.findIn(data, 0, data.length));
+    }
+
+}
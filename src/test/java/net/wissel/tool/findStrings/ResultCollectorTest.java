@@ -0,0 +1,156 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Compares the ResultCollector with a sorted map filled from many threads,
+ * the order of keys and files is part of the result
+ *
+ * @author swissel
+ *
+ */
+public class ResultCollectorTest {
+
+    /* Segments sharing prefixes with / and . around, non ASCII and outside the BMP */
+    private static final String[] SEGMENTS = { "a", "a.b", "a-b", "ab", "b", "x.zip!", "é", "ﬁ", "😀",
+            "A" };
+
+    private static final List<String> KEYS = Arrays.asList("alpha", "beta", "gamma", "delta", "unused");
+
+    static String randomPath(final Random random) {
+        final StringBuilder b = new StringBuilder();
+        final int depth = 1 + random.nextInt(4);
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                b.append('/');
+            }
+            b.append(ResultCollectorTest.SEGMENTS[random.nextInt(ResultCollectorTest.SEGMENTS.length)]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Map and sets as lists, so the comparison covers the order
+     */
+    static List<Object> asLists(final Map<String, ? extends Set<String>> results) {
+        final List<Object> result = new ArrayList<>();
+        results.forEach((key, files) -> {
+            result.add(key);
+            result.add(new ArrayList<>(files));
+        });
+        return result;
+    }
+
+    @Test
+    public void concurrentHitsMatchSortedMap() throws Exception {
+        final ResultCollector collector = new ResultCollector(ResultCollectorTest.KEYS);
+        final Map<String, Set<String>> expected = Collections.synchronizedMap(new TreeMap<>());
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Random random = new Random(t);
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        final String path = ResultCollectorTest.randomPath(random);
+                        final List<String> found = new ArrayList<>();
+                        for (int k = random.nextInt(3); k > 0; k--) {
+                            found.add(ResultCollectorTest.KEYS.get(random.nextInt(4)));
+                        }
+                        found.add("not a key");
+                        collector.addHits(path, found);
+                        for (final String key : found.subList(0, found.size() - 1)) {
+                            expected.computeIfAbsent(key, k -> Collections.synchronizedSet(new TreeSet<>())).add(path);
+                        }
+                    }
+                }));
+            }
+            for (final Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertFalse(collector.isEmpty());
+        assertEquals(ResultCollectorTest.asLists(expected), ResultCollectorTest.asLists(collector.getResults()));
+        assertEquals(ResultCollectorTest.asLists(expected), ResultCollectorTest.asLists(collector.getResults()));
+    }
+
+    @Test
+    public void queriesMatchSets() {
+        final ResultCollector collector = new ResultCollector(ResultCollectorTest.KEYS);
+        final Map<String, Set<String>> expected = new TreeMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            final String path = ResultCollectorTest.randomPath(random);
+            final List<String> found = new ArrayList<>();
+            for (final String key : ResultCollectorTest.KEYS.subList(0, 3)) {
+                if (random.nextInt(3) > 0) {
+                    found.add(key);
+                    expected.computeIfAbsent(key, k -> new TreeSet<>()).add(path);
+                }
+            }
+            collector.addHits(path, found);
+        }
+        final Set<String> all = new TreeSet<>(expected.get("alpha"));
+        all.retainAll(expected.get("beta"));
+        all.retainAll(expected.get("gamma"));
+        assertFalse(all.isEmpty());
+        assertEquals(new ArrayList<>(all),
+                new ArrayList<>(collector.filesMatchingAll(Arrays.asList("gamma", "alpha", "beta"))));
+        assertEquals(new ArrayList<>(expected.get("beta")),
+                new ArrayList<>(collector.filesMatchingAll(Arrays.asList("beta"))));
+        assertTrue(collector.filesMatchingAll(Arrays.asList("alpha", "delta")).isEmpty());
+        assertTrue(collector.filesMatchingAll(Arrays.asList("alpha", "not a key")).isEmpty());
+        assertEquals(new TreeSet<>(Arrays.asList("delta", "unused")), collector.keysNeverFound());
+    }
+
+    @Test
+    public void emptyWithoutKnownKeys() {
+        final ResultCollector collector = new ResultCollector(ResultCollectorTest.KEYS);
+        collector.addHits("a/b", Collections.emptyList());
+        collector.addHits("a/c", Arrays.asList("not a key"));
+        assertTrue(collector.isEmpty());
+        assertTrue(collector.getResults().isEmpty());
+        assertEquals(new TreeSet<>(ResultCollectorTest.KEYS), collector.keysNeverFound());
+    }
+
+}
@@ -0,0 +1,316 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Runs the whole scan on small trees and checks the NDJSON hits
+ *
+ * @author swissel
+ *
+ */
+public class StringFinderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Scans dir for the keys and returns the hits as key|file
+     */
+    Set<String> scan(final File dir, final List<String> keys, final String... extraArgs) throws Exception {
+        return this.scan(new StringFinder(), dir, keys, extraArgs);
+    }
+
+    Set<String> scan(final StringFinder finder, final File dir, final List<String> keys, final String... extraArgs)
+            throws Exception {
+        final File keyFile = this.folder.newFile();
+        Files.write(keyFile.toPath(), keys, StandardCharsets.UTF_8);
+        final File report = this.folder.newFile();
+        final List<String> args = new ArrayList<>(Arrays.asList("-d", dir.getPath(), "-s", keyFile.getPath(),
+                "-r", "ndjson", "-o", report.getPath()));
+        args.addAll(Arrays.asList(extraArgs));
+        assertTrue(finder.parseCommandLine(args.toArray(new String[0])));
+        finder.run();
+        final Set<String> hits = new HashSet<>();
+        for (final String line : Files.readAllLines(report.toPath(), StandardCharsets.UTF_8)) {
+            final JsonObject hit = new JsonParser().parse(line).getAsJsonObject();
+            final String file = hit.get("file").getAsString();
+            final String relative = file.startsWith(dir.getPath()) ? file.substring(dir.getPath().length() + 1)
+                    : file;
+            hits.add(hit.get("key").getAsString() + "|" + relative);
+        }
+        return hits;
+    }
+
+    File write(final File dir, final String name, final String content) throws IOException {
+        final File f = new File(dir, name);
+        f.getParentFile().mkdirs();
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    File zip(final File dir, final String name, final String entryName, final String content) throws IOException {
+        return this.zip(dir, name, entryName, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    File zip(final File dir, final String name, final String entryName, final byte[] content) throws IOException {
+        final File f = new File(dir, name);
+        f.getParentFile().mkdirs();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f))) {
+            out.putNextEntry(new ZipEntry(entryName));
+            out.write(content);
+            out.closeEntry();
+        }
+        return f;
+    }
+
+    /**
+     * outer.zip holding inner.zip holding x.txt with the key
+     */
+    File nestedZip(final File dir) throws IOException {
+        final File inner = this.zip(this.folder.newFolder(), "inner.zip", "x.txt", "a secret");
+        return this.zip(dir, "outer.zip", "inner.zip", Files.readAllBytes(inner.toPath()));
+    }
+
+    /**
+     * Plain files over a few levels, an archive and a nested archive
+     */
+    File sampleTree() throws IOException {
+        final File dir = this.folder.newFolder();
+        this.write(dir, "a.txt", "a secret and more");
+        this.write(dir, "sub/b.txt", "nothing here");
+        this.write(dir, "sub/deeper/c.txt", "SECRET key");
+        this.zip(new File(dir, "sub"), "d.zip", "e.txt", "the key inside");
+        this.nestedZip(dir);
+        return dir;
+    }
+
+    /**
+     * The sample tree with a file too large to be read ahead
+     */
+    File largeSampleTree() throws IOException {
+        final File dir = this.sampleTree();
+        final char[] filler = new char[3 * 1024 * 1024];
+        Arrays.fill(filler, 'x');
+        this.write(dir, "sub/large.txt", new String(filler) + " secret");
+        return dir;
+    }
+
+    @Test(timeout = 60000)
+    public void pipelineWithManyWorkersMatchesSequentialScan() throws Exception {
+        final List<String> keys = Arrays.asList("secret", "key");
+        final Set<String> expected = this.scan(this.sampleTree(), keys);
+        assertEquals(5, expected.size());
+        assertEquals(expected, this.scan(this.sampleTree(), keys, "-p", "1,1,1,4"));
+        // More workers than queue slots, all their poison pills must still fit
+        assertEquals(expected, this.scan(this.sampleTree(), keys, "-p", "2,2,2,1100"));
+    }
+
+    @Test(timeout = 60000)
+    public void virtualScanMatchesSequentialScan() throws Exception {
+        final List<String> keys = Arrays.asList("secret", "key");
+        final Set<String> expected = this.scan(this.largeSampleTree(), keys);
+        assertEquals(6, expected.size());
+        for (final String inFlight : new String[] { "1", "3", "1000" }) {
+            assertEquals(expected, this.scan(this.largeSampleTree(), keys, "-vt", inFlight));
+            assertEquals(expected, this.scan(this.largeSampleTree(), keys, "-vt", inFlight, "-t", "2"));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void virtualScanReportsFailure() throws Exception {
+        final StringFinder failing = new StringFinder() {
+            @Override
+            void matchFile(final File f, final byte[] content) throws IOException {
+                if (f.getName().equals("b.txt")) {
+                    throw new IOException("Cannot read " + f.getName());
+                }
+                super.matchFile(f, content);
+            }
+        };
+        final File dir = this.sampleTree();
+        for (int i = 0; i < 200; i++) {
+            this.write(dir, "many/f" + i + ".txt", "secret " + i);
+        }
+        try {
+            // Few matchers, so matches queue up behind the failing one
+            this.scan(failing, dir, Arrays.asList("secret"), "-vt", "16", "-t", "2");
+            fail("The failure of b.txt was not reported");
+        } catch (final IOException e) {
+            assertEquals("Cannot read b.txt", e.getMessage());
+        }
+    }
+
+    @Test
+    public void maxDepthLimitsAllScans() throws Exception {
+        final List<String> keys = Arrays.asList("secret", "key");
+        // Only the top level, archives found there are still scanned
+        final Set<String> expected = this.scan(this.sampleTree(), keys, "-md", "1");
+        assertEquals(new HashSet<>(Arrays.asList("secret|a.txt", "secret|outer/inner.zip!/x.txt")), expected);
+        final Set<String> twoLevels = this.scan(this.sampleTree(), keys, "-md", "2");
+        assertEquals(3, twoLevels.size());
+        assertTrue(twoLevels.containsAll(expected));
+        assertFalse(twoLevels.toString().contains("deeper"));
+        for (final String[] mode : new String[][] { { "-t", "2" }, { "-p", "1,1,1,2" }, { "-vt", "4" } }) {
+            final List<String> args = new ArrayList<>(Arrays.asList("-md", "1"));
+            args.addAll(Arrays.asList(mode));
+            assertEquals(Arrays.toString(mode), expected,
+                    this.scan(this.sampleTree(), keys, args.toArray(new String[0])));
+        }
+    }
+
+    @Test
+    public void innerArchiveOnDiskIsReportedOnce() throws Exception {
+        final File dir = this.folder.newFolder();
+        this.nestedZip(dir);
+        // Expanded by an older version, which wrote the inner archive to disk
+        this.zip(new File(dir, "outer"), "inner.zip", "x.txt", "a secret");
+        assertEquals(new HashSet<>(Arrays.asList("secret|outer/inner/x.txt")),
+                this.scan(dir, Arrays.asList("secret")));
+    }
+
+    @Test
+    public void cachedNestedHitsSkipInflating() throws Exception {
+        final File dir = this.folder.newFolder();
+        final File outer = this.nestedZip(dir);
+        final String cache = new File(this.folder.getRoot(), "scan.cache").getPath();
+        final List<String> keys = Arrays.asList("secret");
+        final Set<String> expected = new HashSet<>(Arrays.asList("secret|outer/inner.zip!/x.txt"));
+        assertEquals(expected, this.scan(dir, keys, "-c", cache));
+        // Same size and time, opening it would fail
+        final long modified = outer.lastModified();
+        Files.write(outer.toPath(), new byte[(int) outer.length()]);
+        assertTrue(outer.setLastModified(modified));
+        assertEquals(expected, this.scan(dir, keys, "-c", cache));
+        assertEquals(expected, this.scan(dir, keys, "-nz", "-c", cache));
+    }
+
+    @Test
+    public void cacheHonorsArchiveOptions() throws Exception {
+        final File dir = this.folder.newFolder();
+        this.zip(dir, "doc.dat", "inner.txt", "some secret");
+        final String cache = new File(this.folder.getRoot(), "scan.cache").getPath();
+        final List<String> keys = Arrays.asList("secret");
+        assertEquals(new HashSet<String>(), this.scan(dir, keys, "-nx", "-c", cache));
+        assertEquals(new HashSet<>(Arrays.asList("secret|doc.dat!/inner.txt")),
+                this.scan(dir, keys, "-nx", "-x", "-c", cache));
+    }
+
+    @Test
+    public void keysWrittenVerbatimAreFound() throws Exception {
+        final File dir = this.folder.newFolder();
+        this.write(dir, "city.txt", "Welcome to İstanbul");
+        this.write(dir, "street.txt", "ΟΔΟΣ ΑΘΗΝΑΣ");
+        this.write(dir, "lower.txt", "istanbul and οδος");
+        final String city = KeyMatcher.fold("İstanbul");
+        final String street = KeyMatcher.fold("ΟΔΟΣ");
+        final Set<String> expected = new HashSet<>(Arrays.asList(city + "|city.txt", street + "|street.txt",
+                street + "|lower.txt"));
+        assertEquals(expected, this.scan(dir, Arrays.asList("İstanbul", "ΟΔΟΣ")));
+    }
+
+    @Test
+    public void reportsAreWrittenAsUtf8() throws Exception {
+        final File dir = this.folder.newFolder();
+        this.write(dir, "street.txt", "Hauptstraße 1");
+        final String key = KeyMatcher.fold("straße");
+        assertEquals(new HashSet<>(Arrays.asList(key + "|street.txt")), this.scan(dir, Arrays.asList("straße")));
+
+        final File keyFile = this.folder.newFile();
+        Files.write(keyFile.toPath(), Arrays.asList("straße"), StandardCharsets.UTF_8);
+        final File report = this.folder.newFile();
+        final StringFinder finder = new StringFinder();
+        assertTrue(finder.parseCommandLine(new String[] { "-d", dir.getPath(), "-s", keyFile.getPath(), "-r", "md",
+                "-o", report.getPath() }));
+        finder.run();
+        assertTrue(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8).contains("### straße"));
+    }
+
+    @Test
+    public void binaryContentIsSkippedOrMatchedRaw() throws Exception {
+        final byte[] blob = "\0\0\0\1 secret \0 größe \0".getBytes(StandardCharsets.UTF_8);
+        final File dir = this.folder.newFolder();
+        Files.write(new File(dir, "blob.dat").toPath(), blob);
+        this.zip(dir, "pack.zip", "blob.dat", blob);
+        this.write(dir, "plain.txt", "secret größe");
+        final String umlaut = KeyMatcher.fold("größe");
+        final List<String> keys = Arrays.asList("secret", "größe");
+        final Set<String> text = new HashSet<>(Arrays.asList("secret|plain.txt", umlaut + "|plain.txt"));
+        final Set<String> all = new HashSet<>(text);
+        all.addAll(Arrays.asList("secret|blob.dat", umlaut + "|blob.dat", "secret|pack.zip!/blob.dat",
+                umlaut + "|pack.zip!/blob.dat"));
+        assertEquals(all, this.scan(dir, keys, "-nx"));
+        assertEquals(text, this.scan(dir, keys, "-nx", "-b", "skip"));
+        // Raw matching only knows the ASCII keys
+        final Set<String> raw = new HashSet<>(text);
+        raw.addAll(Arrays.asList("secret|blob.dat", "secret|pack.zip!/blob.dat"));
+        assertEquals(raw, this.scan(dir, keys, "-nx", "-b", "raw"));
+        assertEquals(all, this.scan(dir, keys, "-nx", "-b", "skip", "-ba", "dat"));
+    }
+
+    @Test
+    public void archiveStoppedByInflateLimitIsNotLeftExpanded() throws Exception {
+        final File dir = this.folder.newFolder();
+        final byte[] filler = new byte[3 * 1024 * 1024];
+        Arrays.fill(filler, (byte) 'x');
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(new File(dir, "pack.zip")))) {
+            out.putNextEntry(new ZipEntry("a.txt"));
+            out.write("a secret".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("big.txt"));
+            out.write(filler);
+            out.closeEntry();
+        }
+        final List<String> keys = Arrays.asList("secret");
+        final Set<String> inMemory = new HashSet<>(Arrays.asList("secret|pack.zip!/a.txt"));
+        // Stopped expansions are scanned in memory up to the limit, reruns too
+        assertEquals(inMemory, this.scan(dir, keys, "-il", "1"));
+        assertEquals(Arrays.asList("pack.zip"), Arrays.asList(dir.list()));
+        assertEquals(inMemory, this.scan(dir, keys, "-il", "1"));
+        assertEquals(new HashSet<>(Arrays.asList("secret|pack/a.txt")), this.scan(dir, keys));
+        assertEquals(filler.length, new File(dir, "pack/big.txt").length());
+    }
+
+}
@@ -0,0 +1,133 @@
+/** ========================================================================= *
+ * Copyright (C)  2017, 2018 Salesforce Inc ( http://www.salesforce.com/      *
+ *                            All rights reserved.                            *
+ *                                                                            *
+ *  @author     Stephan H. Wissel (stw) <swissel@salesforce.com>              *
+ *                                       @notessensei                         *
+ * @version     1.0                                                           *
+ * ========================================================================== *
+ *                                                                            *
+ * Licensed under the  Apache License, Version 2.0  (the "License").  You may *
+ * not use this file except in compliance with the License.  You may obtain a *
+ * copy of the License at <http://www.apache.org/licenses/LICENSE-2.0>.       *
+ *                                                                            *
+ * Unless  required  by applicable  law or  agreed  to  in writing,  software *
+ * distributed under the License is distributed on an  "AS IS" BASIS, WITHOUT *
+ * WARRANTIES OR  CONDITIONS OF ANY KIND, either express or implied.  See the *
+ * License for the  specific language  governing permissions  and limitations *
+ * under the License.                                                         *
+ *                                                                            *
+ * ========================================================================== *
+ */
+package net.wissel.tool.findStrings;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Walks small trees with TreeDir: depth limits, links into the walk's own
+ * ancestors and links without a target
+ *
+ * @author swissel
+ *
+ */
+public class TreeDirTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Lists the whole tree below dir
+     *
+     * @return the files relative to dir
+     */
+    static Set<String> walk(final File dir, final int maxDepth) throws IOException {
+        final Set<String> result = new TreeSet<>();
+        final Deque<TreeDir> work = new ArrayDeque<>();
+        work.push(TreeDir.root(dir, maxDepth));
+        while (!work.isEmpty()) {
+            final List<TreeDir> dirs = new ArrayList<>();
+            final List<File> files = new ArrayList<>();
+            work.pop().list(dirs, files);
+            dirs.forEach(work::push);
+            for (final File f : files) {
+                assertEquals(f.getPath(), Files.size(f.toPath()), f.length());
+                result.add(dir.toPath().relativize(f.toPath()).toString().replace(File.separatorChar, '/'));
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> setOf(final String... names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    private void write(final File dir, final String name) throws IOException {
+        final File f = new File(dir, name);
+        f.getParentFile().mkdirs();
+        Files.write(f.toPath(), name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void link(final File dir, final String name, final String target) {
+        try {
+            Files.createSymbolicLink(new File(dir, name).toPath(), Paths.get(target));
+        } catch (final IOException | UnsupportedOperationException e) {
+            Assume.assumeNoException("No symbolic links here", e);
+        }
+    }
+
+    @Test
+    public void depthLimitStopsDescending() throws IOException {
+        final File dir = this.folder.newFolder();
+        this.write(dir, "a.txt");
+        this.write(dir, "d1/b.txt");
+        this.write(dir, "d1/d2/c.txt");
+        assertEquals(TreeDirTest.setOf("a.txt"), TreeDirTest.walk(dir, 1));
+        assertEquals(TreeDirTest.setOf("a.txt", "d1/b.txt"), TreeDirTest.walk(dir, 2));
+        assertEquals(TreeDirTest.setOf("a.txt", "d1/b.txt", "d1/d2/c.txt"), TreeDirTest.walk(dir, 3));
+        assertEquals(TreeDirTest.setOf("a.txt", "d1/b.txt", "d1/d2/c.txt"),
+                TreeDirTest.walk(dir, TreeDir.UNLIMITED));
+    }
+
+    @Test(timeout = 10000)
+    public void linkLoopIsSkipped() throws IOException {
+        final File dir = this.folder.newFolder();
+        this.write(dir, "a.txt");
+        this.write(dir, "d1/b.txt");
+        this.write(dir, "d3/c.txt");
+        this.link(new File(dir, "d1"), "up", "..");
+        this.link(new File(dir, "d1"), "self", ".");
+        // Not a loop, the other directory is listed twice
+        this.link(new File(dir, "d1"), "other", "../d3");
+        assertEquals(TreeDirTest.setOf("a.txt", "d1/b.txt", "d1/other/c.txt", "d3/c.txt"),
+                TreeDirTest.walk(dir, TreeDir.UNLIMITED));
+    }
+
+    @Test
+    public void brokenLinkIsSkipped() throws IOException {
+        final File dir = this.folder.newFolder();
+        this.write(dir, "a.txt");
+        this.link(dir, "dangling.txt", "missing.txt");
+        this.link(dir, "dangling", "missing");
+        this.link(dir, "linked.txt", "a.txt");
+        assertEquals(TreeDirTest.setOf("a.txt", "linked.txt"), TreeDirTest.walk(dir, TreeDir.UNLIMITED));
+    }
+
+}